@@ -1,20 +1,35 @@
 package com.mineavatar;
 
+import com.mineavatar.action.ActionContext;
 import com.mineavatar.action.ActionRegistry;
+import com.mineavatar.action.ActionScheduler;
 import com.mineavatar.command.MineAvatarCommands;
 import com.mineavatar.entity.AgentEntity;
+import com.mineavatar.entity.AgentIndex;
+import com.mineavatar.event.AgentEventHub;
+import com.mineavatar.event.WorldEvents;
 import com.mineavatar.network.AgentTcpServer;
+import com.mineavatar.network.RpcSession;
+import com.mineavatar.network.SharedMemoryServer;
+import com.mineavatar.perception.BlockChangeTracker;
+import com.mineavatar.perception.NearbyEntities;
+import com.mineavatar.perception.PerceptionSnapshots;
 import org.slf4j.Logger;
 
 import com.mojang.logging.LogUtils;
 
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.Holder;
 import net.minecraft.core.registries.Registries;
 import net.minecraft.network.chat.Component;
+import net.minecraft.server.level.ServerPlayer;
 import net.minecraft.world.entity.EntityType;
 import net.minecraft.world.entity.MobCategory;
 import net.minecraft.world.item.CreativeModeTab;
 import net.minecraft.world.item.CreativeModeTabs;
 import net.minecraft.world.item.Item;
+import net.minecraft.world.level.gameevent.GameEvent;
+import net.neoforged.bus.api.EventPriority;
 import net.neoforged.bus.api.IEventBus;
 import net.neoforged.bus.api.SubscribeEvent;
 import net.neoforged.fml.common.Mod;
@@ -23,14 +38,23 @@ import net.neoforged.fml.ModContainer;
 import net.neoforged.fml.event.lifecycle.FMLCommonSetupEvent;
 import net.neoforged.neoforge.common.NeoForge;
 import net.neoforged.neoforge.event.RegisterCommandsEvent;
+import net.neoforged.neoforge.event.ServerChatEvent;
+import net.neoforged.neoforge.event.VanillaGameEvent;
 import net.neoforged.neoforge.event.entity.EntityAttributeCreationEvent;
+import net.neoforged.neoforge.event.entity.EntityJoinLevelEvent;
+import net.neoforged.neoforge.event.entity.EntityLeaveLevelEvent;
+import net.neoforged.neoforge.event.entity.living.LivingDeathEvent;
+import net.neoforged.neoforge.event.entity.player.PlayerEvent;
+import net.neoforged.neoforge.event.level.BlockEvent;
 import net.neoforged.neoforge.event.server.ServerStartedEvent;
 import net.neoforged.neoforge.event.server.ServerStoppedEvent;
+import net.neoforged.neoforge.event.tick.ServerTickEvent;
 import net.neoforged.neoforge.registries.DeferredHolder;
 import net.neoforged.neoforge.registries.DeferredItem;
 import net.neoforged.neoforge.registries.DeferredRegister;
 
 import javax.annotation.Nullable;
+import java.util.Set;
 
 @Mod(MineAvatar.MODID)
 public class MineAvatar {
@@ -63,8 +87,16 @@ public class MineAvatar {
                         output.accept(AGENT_SPAWNER.get());
                     }).build());
 
+    /** Game events that change a block without necessarily notifying its neighbors (e.g. door halves). */
+    private static final Set<Holder<GameEvent>> BLOCK_GAME_EVENTS = Set.of(
+            GameEvent.BLOCK_PLACE, GameEvent.BLOCK_DESTROY, GameEvent.BLOCK_CHANGE,
+            GameEvent.BLOCK_OPEN, GameEvent.BLOCK_CLOSE, GameEvent.BLOCK_ACTIVATE,
+            GameEvent.BLOCK_DEACTIVATE, GameEvent.FLUID_PLACE, GameEvent.FLUID_PICKUP);
+
     @Nullable
     private AgentTcpServer tcpServer;
+    @Nullable
+    private SharedMemoryServer shmServer;
 
     public MineAvatar(IEventBus modEventBus, ModContainer modContainer) {
         modEventBus.addListener(this::commonSetup);
@@ -99,7 +131,83 @@ public class MineAvatar {
         if (MineAvatarConfig.WS_ENABLED.get()) {
             int port = MineAvatarConfig.WS_PORT.get();
             tcpServer = new AgentTcpServer(port);
-            tcpServer.start(event.getServer(), ActionRegistry.get());
+            tcpServer.start(event.getServer(), ActionRegistry.get(), ActionScheduler.get());
+        }
+        String shmPath = MineAvatarConfig.SHM_PATH.get();
+        if (!shmPath.isEmpty()) {
+            shmServer = new SharedMemoryServer(shmPath, MineAvatarConfig.SHM_RING_BYTES.get());
+            shmServer.start(event.getServer(), ActionRegistry.get(), ActionScheduler.get());
+        }
+    }
+
+    @SubscribeEvent
+    public void onServerTick(ServerTickEvent.Pre event) {
+        ActionScheduler.get().tick(event.getServer());
+        RpcSession.expireDetached();
+    }
+
+    @SubscribeEvent
+    public void onServerTickEnd(ServerTickEvent.Post event) {
+        PerceptionSnapshots.get().capture(event.getServer());
+        AgentEventHub.get().flush(event.getServer().getTickCount());
+        BlockChangeTracker.get().flush(event.getServer().getTickCount());
+    }
+
+    @SubscribeEvent
+    public void onNeighborNotify(BlockEvent.NeighborNotifyEvent event) {
+        BlockChangeTracker.get().blockChanged(event.getLevel(), event.getPos());
+    }
+
+    @SubscribeEvent
+    public void onVanillaGameEvent(VanillaGameEvent event) {
+        if (!BLOCK_GAME_EVENTS.contains(event.getVanillaEvent())) return;
+        BlockPos pos = BlockPos.containing(event.getEventPosition());
+        BlockChangeTracker tracker = BlockChangeTracker.get();
+        tracker.blockChanged(event.getLevel(), pos);
+        // Two-block blocks (doors, tall plants) update their other half silently.
+        tracker.blockChanged(event.getLevel(), pos.above());
+        tracker.blockChanged(event.getLevel(), pos.below());
+    }
+
+    @SubscribeEvent(priority = EventPriority.LOWEST)
+    public void onEntityJoinLevel(EntityJoinLevelEvent event) {
+        if (!event.getLevel().isClientSide() && event.getEntity() instanceof AgentEntity agent) {
+            AgentIndex.get().add(agent);
+        }
+    }
+
+    @SubscribeEvent
+    public void onEntityLeaveLevel(EntityLeaveLevelEvent event) {
+        if (event.getLevel().isClientSide()) return;
+        if (event.getEntity() instanceof AgentEntity agent) {
+            AgentIndex.get().remove(agent);
+        }
+        ActionContext.forgetEntity(event.getEntity().getUUID());
+    }
+
+    @SubscribeEvent
+    public void onLivingDeath(LivingDeathEvent event) {
+        if (!event.getEntity().level().isClientSide) {
+            WorldEvents.death(event.getEntity(), event.getSource());
+        }
+    }
+
+    @SubscribeEvent
+    public void onServerChat(ServerChatEvent event) {
+        WorldEvents.chat(event.getPlayer(), event.getRawText());
+    }
+
+    @SubscribeEvent
+    public void onPlayerLoggedIn(PlayerEvent.PlayerLoggedInEvent event) {
+        if (event.getEntity() instanceof ServerPlayer player) {
+            WorldEvents.ownerConnection(player, true);
+        }
+    }
+
+    @SubscribeEvent
+    public void onPlayerLoggedOut(PlayerEvent.PlayerLoggedOutEvent event) {
+        if (event.getEntity() instanceof ServerPlayer player) {
+            WorldEvents.ownerConnection(player, false);
         }
     }
 
@@ -109,5 +217,17 @@ public class MineAvatar {
             tcpServer.stop();
             tcpServer = null;
         }
+        if (shmServer != null) {
+            shmServer.stop();
+            shmServer = null;
+        }
+        RpcSession.closeAll();
+        ActionScheduler.get().clear();
+        AgentEventHub.get().clear();
+        PerceptionSnapshots.get().clear();
+        NearbyEntities.get().clear();
+        BlockChangeTracker.get().clear();
+        AgentIndex.get().clear();
+        ActionContext.clearCaches();
     }
 }
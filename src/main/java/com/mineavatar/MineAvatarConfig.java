@@ -15,6 +15,10 @@ public class MineAvatarConfig {
             .comment("Maximum number of active agents per player")
             .defineInRange("agent.maxPerPlayer", 3, 1, 10);
 
+    public static final ModConfigSpec.IntValue MOVE_TO_WAIT_SECONDS = BUILDER
+            .comment("Default time (seconds) an agent.moveTo with \"wait\": true holds its reply before answering NAV_TIMEOUT")
+            .defineInRange("agent.moveToWaitSeconds", 60, 1, 3600);
+
     // ── WebSocket ──
     public static final ModConfigSpec.BooleanValue WS_ENABLED = BUILDER
             .comment("Enable the WebSocket server for external agent control")
@@ -28,5 +32,160 @@ public class MineAvatarConfig {
             .comment("Shared token for WebSocket authentication")
             .define("websocket.token", "mineavatar");
 
+    public enum Transport { AUTO, NIO, EPOLL }
+
+    public static final ModConfigSpec.EnumValue<Transport> WS_TRANSPORT = BUILDER
+            .comment("Socket transport: AUTO uses native epoll when available, otherwise NIO")
+            .defineEnum("websocket.transport", Transport.AUTO);
+
+    public static final ModConfigSpec.ConfigValue<String> WS_UNIX_SOCKET_PATH = BUILDER
+            .comment("If set, also listen on this Unix domain socket path (requires epoll). Empty to disable")
+            .define("websocket.unixSocketPath", "");
+
+    public static final ModConfigSpec.IntValue WS_WORKER_THREADS = BUILDER
+            .comment("Number of network worker threads for agent connections")
+            .defineInRange("websocket.workerThreads", 2, 1, 64);
+
+    public static final ModConfigSpec.IntValue WS_BACKLOG = BUILDER
+            .comment("Accept backlog for the listening socket")
+            .defineInRange("websocket.backlog", 8, 1, 4096);
+
+    public static final ModConfigSpec.BooleanValue WS_TCP_NODELAY = BUILDER
+            .comment("Disable Nagle's algorithm on TCP connections (lower latency for small frames)")
+            .define("websocket.tcpNoDelay", true);
+
+    public static final ModConfigSpec.IntValue WS_WRITE_BUFFER_LOW = BUILDER
+            .comment("Outbound buffer size (bytes) below which a connection becomes writable again")
+            .defineInRange("websocket.writeBufferLowWaterMark", 32 * 1024, 1024, 64 * 1024 * 1024);
+
+    public static final ModConfigSpec.IntValue WS_WRITE_BUFFER_HIGH = BUILDER
+            .comment("Outbound buffer size (bytes) above which a connection stops reading new requests")
+            .defineInRange("websocket.writeBufferHighWaterMark", 256 * 1024, 2048, 128 * 1024 * 1024);
+
+    public static final ModConfigSpec.IntValue WS_MAX_FRAME_BYTES = BUILDER
+            .comment("Largest frame payload (bytes) accepted from a client, after decompression; larger frames close the connection")
+            .defineInRange("websocket.maxFrameBytes", 1024 * 1024, 1024, 64 * 1024 * 1024);
+
+    public static final ModConfigSpec.IntValue WS_COMPRESSION_THRESHOLD = BUILDER
+            .comment("Frames smaller than this (bytes) are sent uncompressed even when the client negotiated compression")
+            .defineInRange("websocket.compressionThreshold", 1024, 0, 64 * 1024 * 1024);
+
+    // ── Limits ──
+    public static final ModConfigSpec.IntValue MAX_PENDING_REQUESTS = BUILDER
+            .comment("Per-connection number of queued requests after which reading from the connection pauses")
+            .defineInRange("limits.maxPendingRequests", 512, 1, 100_000);
+
+    public static final ModConfigSpec.DoubleValue CONNECTION_RATE_LIMIT = BUILDER
+            .comment("Per-connection request rate limit (requests/second, 0 = unlimited). Excess requests get RATE_LIMITED")
+            .defineInRange("limits.connectionRatePerSecond", 1000.0, 0.0, 1_000_000.0);
+
+    public static final ModConfigSpec.DoubleValue CONNECTION_RATE_BURST = BUILDER
+            .comment("Per-connection burst size for the request rate limit")
+            .defineInRange("limits.connectionBurst", 2000.0, 1.0, 1_000_000.0);
+
+    public static final ModConfigSpec.DoubleValue TOKEN_RATE_LIMIT = BUILDER
+            .comment("Request rate limit shared by all connections using the same auth token (requests/second, 0 = unlimited)")
+            .defineInRange("limits.tokenRatePerSecond", 0.0, 0.0, 1_000_000.0);
+
+    public static final ModConfigSpec.DoubleValue TOKEN_RATE_BURST = BUILDER
+            .comment("Burst size for the per-token request rate limit")
+            .defineInRange("limits.tokenBurst", 4000.0, 1.0, 1_000_000.0);
+
+    public static final ModConfigSpec.IntValue REPLAY_CACHE_SIZE = BUILDER
+            .comment("Per-connection number of recent request results kept by ID, so a retried request (same ID, method and params) is answered without running twice (0 = disabled)")
+            .defineInRange("limits.replayCacheSize", 256, 0, 65_536);
+
+    public static final ModConfigSpec.IntValue REPLAY_CACHE_TTL_SECONDS = BUILDER
+            .comment("How long (seconds) a cached request result can be replayed")
+            .defineInRange("limits.replayCacheTtlSeconds", 60, 1, 3600);
+
+    public static final ModConfigSpec.IntValue SESSION_GRACE_SECONDS = BUILDER
+            .comment("How long (seconds) a disconnected session is kept for the client to resume it with its session token (0 = no resumption)")
+            .defineInRange("limits.sessionGraceSeconds", 30, 0, 3600);
+
+    public static final ModConfigSpec.IntValue SESSION_BUFFER_SIZE = BUILDER
+            .comment("Messages buffered for a disconnected session while it waits to be resumed; the oldest are dropped beyond this")
+            .defineInRange("limits.sessionBufferSize", 1024, 1, 65_536);
+
+    // ── Shared memory ──
+    public static final ModConfigSpec.ConfigValue<String> SHM_PATH = BUILDER
+            .comment("If set, serve agent RPC through a memory-mapped ring-buffer file at this path (same-host controllers). Empty to disable")
+            .define("sharedMemory.path", "");
+
+    public static final ModConfigSpec.IntValue SHM_RING_BYTES = BUILDER
+            .comment("Size of each shared memory ring buffer in bytes (rounded up to a power of two)")
+            .defineInRange("sharedMemory.ringBytes", 4 * 1024 * 1024, 64 * 1024, 256 * 1024 * 1024);
+
+    public static final ModConfigSpec.IntValue SHM_MAX_OUTBOUND = BUILDER
+            .comment("Messages queued for the response ring before the oldest are dropped; above half of this, requests are no longer read and pushes are skipped")
+            .defineInRange("sharedMemory.maxOutboundMessages", 4096, 16, 1_000_000);
+
+    public static final ModConfigSpec.IntValue SHM_SPINS_BEFORE_PARK = BUILDER
+            .comment("Idle poll iterations spent busy-spinning before the shared memory poller starts parking")
+            .defineInRange("sharedMemory.spinsBeforePark", 2000, 0, 1_000_000);
+
+    public static final ModConfigSpec.IntValue SHM_MIN_PARK_MICROS = BUILDER
+            .comment("First park (microseconds) of an idle shared memory poller; doubles while idle")
+            .defineInRange("sharedMemory.minParkMicros", 20, 1, 1_000_000);
+
+    public static final ModConfigSpec.IntValue SHM_MAX_PARK_MICROS = BUILDER
+            .comment("Longest park (microseconds) of an idle shared memory poller, i.e. the worst-case extra latency for a request after a quiet period")
+            .defineInRange("sharedMemory.maxParkMicros", 2000, 1, 1_000_000);
+
+    // ── Scheduler ──
+    public static final ModConfigSpec.LongValue SCHEDULER_TICK_BUDGET_NANOS = BUILDER
+            .comment("Main-thread time (in nanoseconds) agent actions may use per server tick; the rest carries over")
+            .defineInRange("scheduler.tickBudgetNanos", 5_000_000L, 100_000L, 50_000_000L);
+
+    public static final ModConfigSpec.IntValue SCHEDULER_ASYNC_TIMEOUT_SECONDS = BUILDER
+            .comment("Upper bound (seconds) on how long any asynchronous action may hold its reply before ASYNC_TIMEOUT")
+            .defineInRange("scheduler.asyncTimeoutSeconds", 600, 1, 86_400);
+
+    public static final ModConfigSpec.IntValue SCHEDULER_MAX_QUEUE_DEPTH = BUILDER
+            .comment("Maximum number of queued agent action tasks; further requests are rejected with QUEUE_FULL")
+            .defineInRange("scheduler.maxQueueDepth", 4096, 16, 1_000_000);
+
+    public static final ModConfigSpec.IntValue SCHEDULER_CONTROL_HEADROOM = BUILDER
+            .comment("Extra queued tasks allowed beyond maxQueueDepth for control-only groups (e.g. agent.stop), so a full queue cannot block a stop")
+            .defineInRange("scheduler.controlHeadroom", 256, 0, 100_000);
+
+    // ── Perception ──
+    public static final ModConfigSpec.IntValue NEARBY_MAX_RADIUS = BUILDER
+            .comment("Largest radius (in blocks) a perception.nearby query may ask for")
+            .defineInRange("perception.nearbyMaxRadius", 64, 1, 256);
+
+    public static final ModConfigSpec.IntValue REGION_MAX_SIZE = BUILDER
+            .comment("Largest edge length (in blocks) of a perception.region cuboid")
+            .defineInRange("perception.regionMaxSize", 64, 1, 256);
+
+    public static final ModConfigSpec.IntValue BLOCK_CHANGE_MAX_RADIUS = BUILDER
+            .comment("Largest radius (in blocks) around an agent a blocks.subscribe may watch")
+            .defineInRange("perception.blockChangeMaxRadius", 32, 1, 128);
+
+    public static final ModConfigSpec.IntValue RAYCAST_MAX_DISTANCE = BUILDER
+            .comment("Longest ray (in blocks) perception.raycast and perception.vision may cast")
+            .defineInRange("perception.raycastMaxDistance", 64, 1, 128);
+
+    public static final ModConfigSpec.IntValue RAYCAST_MAX_RAYS = BUILDER
+            .comment("Most rays per perception.raycast call, and most pixels (width x height) per perception.vision image")
+            .defineInRange("perception.raycastMaxRays", 4096, 1, 65536);
+
+    // ── Events ──
+    public static final ModConfigSpec.IntValue NAV_PROGRESS_INTERVAL_TICKS = BUILDER
+            .comment("Minimum ticks between two nav.progress notifications for the same agent (a path recompute is flagged on the next one)")
+            .defineInRange("events.navProgressIntervalTicks", 10, 1, 1200);
+
+    public static final ModConfigSpec.IntValue NAV_STUCK_TICKS = BUILDER
+            .comment("Ticks a navigating agent may move less than a quarter block before nav.stuck is sent")
+            .defineInRange("events.navStuckTicks", 40, 5, 1200);
+
+    public static final ModConfigSpec.IntValue WORLD_EVENT_RADIUS = BUILDER
+            .comment("Distance (in blocks) within which an agent is told about deaths and chat (world.death, world.chat)")
+            .defineInRange("events.worldEventRadius", 32, 1, 256);
+
+    public static final ModConfigSpec.IntValue EVENT_BUFFER_SIZE = BUILDER
+            .comment("world.* events buffered per connection while it is detached or backlogged; older ones are dropped and counted")
+            .defineInRange("events.bufferSize", 256, 1, 65_536);
+
     static final ModConfigSpec SPEC = BUILDER.build();
 }
@@ -1,14 +1,18 @@
 package com.mineavatar.action;
 
 import com.mineavatar.entity.AgentEntity;
+import com.mineavatar.entity.AgentIndex;
+import net.minecraft.resources.ResourceKey;
 import net.minecraft.server.MinecraftServer;
 import net.minecraft.server.level.ServerLevel;
 import net.minecraft.world.entity.Entity;
+import net.minecraft.world.level.Level;
 
 import javax.annotation.Nullable;
-import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Execution context for the action layer.
@@ -17,6 +21,9 @@ import java.util.UUID;
  */
 public class ActionContext {
 
+    /** Level each entity was last resolved in, by UUID. Entries go when the entity leaves its level. */
+    private static final Map<UUID, ResourceKey<Level>> LAST_SEEN_LEVEL = new ConcurrentHashMap<>();
+
     private final MinecraftServer server;
 
     public ActionContext(MinecraftServer server) {
@@ -26,38 +33,23 @@ public class ActionContext {
     public MinecraftServer getServer() { return server; }
 
     /**
-     * Find an agent by name (global, across all dimensions).
+     * Find an agent by name (global, across all dimensions), via {@link AgentIndex}.
      */
     @Nullable
     public AgentEntity findAgent(String name) {
-        for (ServerLevel level : server.getAllLevels()) {
-            for (Entity entity : level.getAllEntities()) {
-                if (entity instanceof AgentEntity agent
-                        && agent.getAgentName().equals(name)) {
-                    return agent;
-                }
-            }
-        }
-        return null;
+        return AgentIndex.get().byName(name);
     }
 
     /**
      * List all agents in the server.
      */
     public List<AgentEntity> listAgents() {
-        List<AgentEntity> agents = new ArrayList<>();
-        for (ServerLevel level : server.getAllLevels()) {
-            for (Entity entity : level.getAllEntities()) {
-                if (entity instanceof AgentEntity agent) {
-                    agents.add(agent);
-                }
-            }
-        }
-        return agents;
+        return AgentIndex.get().all();
     }
 
     /**
-     * Resolve an entity by UUID string in any loaded level.
+     * Resolve an entity by UUID string in any loaded level. The level it was last found in is
+     * tried first.
      */
     @Nullable
     public Entity resolveEntity(String uuidStr) {
@@ -67,13 +59,34 @@ public class ActionContext {
         } catch (IllegalArgumentException e) {
             return null;
         }
+        ResourceKey<Level> lastSeen = LAST_SEEN_LEVEL.get(uuid);
+        if (lastSeen != null) {
+            ServerLevel level = server.getLevel(lastSeen);
+            Entity entity = level != null ? level.getEntity(uuid) : null;
+            if (entity != null) return entity;
+        }
         for (ServerLevel level : server.getAllLevels()) {
             Entity entity = level.getEntity(uuid);
-            if (entity != null) return entity;
+            if (entity != null) {
+                LAST_SEEN_LEVEL.put(uuid, level.dimension());
+                return entity;
+            }
         }
+        LAST_SEEN_LEVEL.remove(uuid);
         return null;
     }
 
+    /**
+     * An entity left its level; drop its {@link #resolveEntity} hint.
+     */
+    public static void forgetEntity(UUID uuid) {
+        LAST_SEEN_LEVEL.remove(uuid);
+    }
+
+    public static void clearCaches() {
+        LAST_SEEN_LEVEL.clear();
+    }
+
     /**
      * Get the overworld (default dimension for spawning).
      */
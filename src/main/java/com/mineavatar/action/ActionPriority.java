@@ -0,0 +1,21 @@
+package com.mineavatar.action;
+
+/**
+ * Scheduling lane of an action method. {@link ActionScheduler} drains lanes in declaration order.
+ */
+public enum ActionPriority {
+    /** Emergency and combat control; always runs in the tick it arrives, outside the tick budget. */
+    CONTROL("control"),
+    /** Commands that change world or agent state; queued behind CONTROL within the budget. */
+    NORMAL("normal"),
+    /** Read-only bulk work (perception); absorbs whatever deferral the budget forces. */
+    BULK("bulk");
+
+    private final String wireName;
+
+    ActionPriority(String wireName) {
+        this.wireName = wireName;
+    }
+
+    public String getWireName() { return wireName; }
+}
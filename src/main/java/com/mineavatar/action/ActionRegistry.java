@@ -1,17 +1,36 @@
 package com.mineavatar.action;
 
 import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.mineavatar.MineAvatar;
+import com.mineavatar.MineAvatarConfig;
 import com.mineavatar.entity.AgentEntity;
+import com.mineavatar.perception.AgentSnapshot;
+import com.mineavatar.perception.BlockRegion;
+import com.mineavatar.perception.NearbyEntities;
+import com.mineavatar.perception.PerceptionField;
+import com.mineavatar.perception.PerceptionSnapshots;
+import com.mineavatar.perception.RayCaster;
+import net.minecraft.Util;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.SectionPos;
 import net.minecraft.network.chat.Component;
 import net.minecraft.server.level.ServerLevel;
 import net.minecraft.world.entity.Entity;
+import net.minecraft.world.phys.Vec3;
 
 import javax.annotation.Nullable;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Central registry for all agent actions.
@@ -23,7 +42,21 @@ import java.util.Map;
 public class ActionRegistry {
 
     private static final ActionRegistry INSTANCE = new ActionRegistry();
-    private final Map<String, ActionHandler> handlers = new HashMap<>();
+    private final Map<String, AsyncActionHandler> handlers = new HashMap<>();
+
+    // Stable integer IDs for compact protocols, assigned in registration order starting at 1.
+    private final Map<String, Integer> methodIds = new HashMap<>();
+    private final List<String> methodNames = new ArrayList<>();
+
+    // Per-agent state a method fully overwrites; see setCoalesceSlots.
+    private final Map<String, Set<String>> coalesceSlots = new HashMap<>();
+    private final Map<String, ActionPriority> priorities = new HashMap<>();
+    // Methods that only read PerceptionSnapshots and may run on any thread.
+    private final Set<String> concurrentMethods = new HashSet<>();
+
+    public static final String SLOT_NAV = "nav";
+    public static final String SLOT_LOOK = "look";
+    public static final String SLOT_MODEL = "model";
 
     public static ActionRegistry get() { return INSTANCE; }
 
@@ -32,32 +65,131 @@ public class ActionRegistry {
     }
 
     public void register(String method, ActionHandler handler) {
+        registerAsync(method, (ctx, params) -> CompletableFuture.completedFuture(handler.execute(ctx, params)));
+    }
+
+    /**
+     * Register a handler that may complete on a later tick. {@link #dispatchAsync} callers
+     * (the RPC layer) reply when it completes; {@link #dispatch} callers get {@code pending}.
+     */
+    public void registerAsync(String method, AsyncActionHandler handler) {
         handlers.put(method, handler);
+        if (!methodIds.containsKey(method)) {
+            methodNames.add(method);
+            methodIds.put(method, methodNames.size());
+        }
+    }
+
+    /**
+     * Register a read-only handler that works purely on {@link PerceptionSnapshots}.
+     * The RPC layer answers these on its I/O threads through {@link #dispatchConcurrent},
+     * without a scheduler hop; the handler must not touch the world or the {@link ActionContext}.
+     */
+    public void registerConcurrent(String method, ActionHandler handler) {
+        register(method, handler);
+        concurrentMethods.add(method);
+    }
+
+    public boolean isConcurrent(String method) {
+        return concurrentMethods.contains(method);
+    }
+
+    /**
+     * Run a method registered with {@link #registerConcurrent}. Safe on any thread.
+     */
+    public ActionResult dispatchConcurrent(String method, ActionContext ctx, JsonObject params) {
+        return dispatchAsync(method, ctx, params).join();
     }
 
     /**
      * Dispatch an action by method name.
      * Must be called on the server main thread.
+     * An async action that has not finished yet returns success with {@code "status": "pending"}.
      */
     public ActionResult dispatch(String method, ActionContext ctx, JsonObject params) {
-        ActionHandler handler = handlers.get(method);
+        CompletableFuture<ActionResult> future = dispatchAsync(method, ctx, params);
+        return future.isDone() ? future.join() : ActionResult.ok("status", "pending");
+    }
+
+    /**
+     * Dispatch an action by method name, without waiting for async actions.
+     * Must be called on the server main thread. The future never completes exceptionally.
+     */
+    public CompletableFuture<ActionResult> dispatchAsync(String method, ActionContext ctx, JsonObject params) {
+        AsyncActionHandler handler = handlers.get(method);
         if (handler == null) {
-            return ActionResult.fail("METHOD_NOT_FOUND",
+            return CompletableFuture.completedFuture(ActionResult.fail("METHOD_NOT_FOUND",
                     "Unknown method: " + method,
-                    "Available: " + String.join(", ", handlers.keySet()));
+                    "Available: " + String.join(", ", handlers.keySet())));
         }
         try {
-            return handler.execute(ctx, params);
+            return handler.execute(ctx, params).exceptionally(e -> {
+                MineAvatar.LOGGER.error("Action '{}' failed asynchronously", method, e);
+                return ActionResult.fail("INTERNAL_ERROR", e.getMessage());
+            });
         } catch (Exception e) {
             MineAvatar.LOGGER.error("Action '{}' threw exception", method, e);
-            return ActionResult.fail("INTERNAL_ERROR", e.getMessage());
+            return CompletableFuture.completedFuture(ActionResult.fail("INTERNAL_ERROR", e.getMessage()));
         }
     }
 
+    /**
+     * Declare the per-agent state slots a method overwrites regardless of what was there before.
+     * A queued call whose slots are all overwritten by a newer queued call for the same agent
+     * is skipped by {@link ActionScheduler} and answered with {@code SUPERSEDED}.
+     */
+    public void setCoalesceSlots(String method, String... slots) {
+        coalesceSlots.put(method, Set.of(slots));
+    }
+
+    /**
+     * Slots set with {@link #setCoalesceSlots}, or an empty set if the method never coalesces.
+     */
+    public Set<String> coalesceSlots(String method) {
+        return coalesceSlots.getOrDefault(method, Set.of());
+    }
+
+    /**
+     * Put a method in a scheduling lane other than {@link ActionPriority#NORMAL}.
+     * Only read-only methods belong in {@link ActionPriority#BULK}: lanes are drained
+     * independently, so a write could otherwise overtake an earlier one for the same agent.
+     */
+    public void setPriority(String method, ActionPriority priority) {
+        priorities.put(method, priority);
+    }
+
+    public ActionPriority priority(String method) {
+        return priorities.getOrDefault(method, ActionPriority.NORMAL);
+    }
+
     public boolean hasMethod(String method) {
         return handlers.containsKey(method);
     }
 
+    /**
+     * Integer ID of a method for binary clients, or 0 if the method is unknown.
+     */
+    public int methodId(String method) {
+        Integer id = methodIds.get(method);
+        return id != null ? id : 0;
+    }
+
+    @Nullable
+    public String methodName(int id) {
+        return id >= 1 && id <= methodNames.size() ? methodNames.get(id - 1) : null;
+    }
+
+    /**
+     * The full method → ID table, sent to clients that negotiate the binary protocol.
+     */
+    public JsonObject methodTable() {
+        JsonObject table = new JsonObject();
+        for (int i = 0; i < methodNames.size(); i++) {
+            table.addProperty(methodNames.get(i), i + 1);
+        }
+        return table;
+    }
+
     // ═══════════════════════════════════════════════════════════════
     //  Helpers
     // ═══════════════════════════════════════════════════════════════
@@ -82,6 +214,30 @@ public class ActionRegistry {
         return agent;
     }
 
+    /**
+     * Snapshot counterpart of {@link #resolveAgent}, with the same error codes.
+     */
+    @Nullable
+    private static AgentSnapshot resolveSnapshot(PerceptionSnapshots.Frame frame, JsonObject params,
+                                                 ActionResult[] errorOut) {
+        String name = params.has("agent") ? params.get("agent").getAsString() : null;
+        if (name == null || name.isEmpty()) {
+            errorOut[0] = ActionResult.fail("MISSING_PARAM", "Parameter 'agent' is required");
+            return null;
+        }
+        AgentSnapshot agent = frame.agent(name);
+        if (agent == null) {
+            errorOut[0] = ActionResult.fail("AGENT_NOT_FOUND",
+                    "No agent named '" + name + "' found");
+            return null;
+        }
+        if (!agent.alive()) {
+            errorOut[0] = ActionResult.fail("AGENT_DEAD", "Agent '" + name + "' is dead");
+            return null;
+        }
+        return agent;
+    }
+
     @Nullable
     private static Entity resolveTarget(ActionContext ctx, JsonObject params, ActionResult[] errorOut) {
         String targetStr = params.has("target") ? params.get("target").getAsString() : null;
@@ -104,16 +260,23 @@ public class ActionRegistry {
 
     private void registerDefaults() {
         // ── Navigation ──
-        register("agent.moveTo", this::handleMoveTo);
+        registerAsync("agent.moveTo", this::handleMoveTo);
         register("agent.stop", this::handleStop);
+        setCoalesceSlots("agent.moveTo", SLOT_NAV);
+        setCoalesceSlots("agent.stop", SLOT_NAV, SLOT_LOOK);  // stop also clears the look target
+        setPriority("agent.stop", ActionPriority.CONTROL);
 
         // ── Look ──
         register("agent.lookAt", this::handleLookAt);
         register("agent.lookAtBlock", this::handleLookAtBlock);
         register("agent.lookClear", this::handleLookClear);
+        setCoalesceSlots("agent.lookAt", SLOT_LOOK);
+        setCoalesceSlots("agent.lookAtBlock", SLOT_LOOK);
+        setCoalesceSlots("agent.lookClear", SLOT_LOOK);
 
         // ── Combat ──
         register("agent.attack", this::handleAttack);
+        setPriority("agent.attack", ActionPriority.CONTROL);
 
         // ── Social ──
         register("agent.chat", this::handleChat);
@@ -122,35 +285,94 @@ public class ActionRegistry {
         register("agent.spawn", this::handleSpawn);
         register("agent.dismiss", this::handleDismiss);
         register("agent.setModel", this::handleSetModel);
+        setCoalesceSlots("agent.setModel", SLOT_MODEL);
 
         // ── Perception ──
-        register("perception.self", this::handlePerceptionSelf);
-        register("perception.agents", this::handlePerceptionAgents);
+        registerConcurrent("perception.self", this::handlePerceptionSelf);
+        registerConcurrent("perception.agents", this::handlePerceptionAgents);
+        register("perception.nearby", this::handlePerceptionNearby);
+        setPriority("perception.nearby", ActionPriority.BULK);
+        registerAsync("perception.region", this::handlePerceptionRegion);
+        setPriority("perception.region", ActionPriority.BULK);
+        registerAsync("perception.raycast", this::handlePerceptionRaycast);
+        setPriority("perception.raycast", ActionPriority.BULK);
+        registerAsync("perception.vision", this::handlePerceptionVision);
+        setPriority("perception.vision", ActionPriority.BULK);
+
+        // ── Server ──
+        register("server.stats", this::handleServerStats);
     }
 
     // ── Navigation ──────────────────────────────────────────────────
 
-    private ActionResult handleMoveTo(ActionContext ctx, JsonObject params) {
+    /**
+     * Starts a path. With {@code "wait": true} the reply is held until the agent arrives, fails
+     * to, or is interrupted — at most {@code waitTimeoutMs} (default {@code agent.moveToWaitSeconds}).
+     */
+    private CompletableFuture<ActionResult> handleMoveTo(ActionContext ctx, JsonObject params) {
         ActionResult[] err = {null};
         AgentEntity agent = resolveAgent(ctx, params, err);
-        if (agent == null) return err[0];
+        if (agent == null) return CompletableFuture.completedFuture(err[0]);
 
         if (!params.has("x") || !params.has("y") || !params.has("z")) {
-            return ActionResult.fail("MISSING_PARAM", "Parameters 'x', 'y', 'z' are required");
+            return CompletableFuture.completedFuture(
+                    ActionResult.fail("MISSING_PARAM", "Parameters 'x', 'y', 'z' are required"));
         }
         double x = params.get("x").getAsDouble();
         double y = params.get("y").getAsDouble();
         double z = params.get("z").getAsDouble();
 
+        boolean wait = params.has("wait") && params.get("wait").getAsBoolean();
+        long maxTimeoutMs = MineAvatarConfig.SCHEDULER_ASYNC_TIMEOUT_SECONDS.get() * 1000L;
+        long timeoutMs = MineAvatarConfig.MOVE_TO_WAIT_SECONDS.get() * 1000L;
+        if (wait && params.has("waitTimeoutMs")) {
+            JsonElement value = params.get("waitTimeoutMs");
+            timeoutMs = value.isJsonPrimitive() && value.getAsJsonPrimitive().isNumber() ? value.getAsLong() : 0;
+            if (timeoutMs < 1 || timeoutMs > maxTimeoutMs) {
+                return CompletableFuture.completedFuture(ActionResult.fail("INVALID_PARAM",
+                        "'waitTimeoutMs' must be between 1 and " + maxTimeoutMs + " (scheduler.asyncTimeoutSeconds)"));
+            }
+        }
+
         boolean started = agent.commandMoveTo(x, y, z);
-        if (started) {
+        if (!started) {
+            return CompletableFuture.completedFuture(ActionResult.fail("PATH_NOT_FOUND",
+                    String.format("Cannot find path to (%.1f, %.1f, %.1f)", x, y, z)));
+        }
+
+        if (!wait) {
             JsonObject data = new JsonObject();
             data.addProperty("message", String.format("Moving to (%.1f, %.1f, %.1f)", x, y, z));
-            return ActionResult.ok(data);
-        } else {
-            return ActionResult.fail("PATH_NOT_FOUND",
-                    String.format("Cannot find path to (%.1f, %.1f, %.1f)", x, y, z));
+            return CompletableFuture.completedFuture(ActionResult.ok(data));
         }
+
+        String target = String.format("(%.1f, %.1f, %.1f)", x, y, z);
+        return agent.awaitNavigation()
+                .thenApply(outcome -> navigationResult(agent, outcome, target))
+                .completeOnTimeout(ActionResult.fail("NAV_TIMEOUT",
+                        "Agent did not reach " + target + " within " + timeoutMs + " ms",
+                        "The agent keeps moving; check perception.self or send agent.stop"),
+                        timeoutMs, TimeUnit.MILLISECONDS);
+    }
+
+    private static ActionResult navigationResult(AgentEntity agent, AgentEntity.NavOutcome outcome, String target) {
+        return switch (outcome) {
+            case ARRIVED -> {
+                JsonObject data = new JsonObject();
+                data.addProperty("message", "Arrived at " + target);
+                data.addProperty("x", agent.getX());
+                data.addProperty("y", agent.getY());
+                data.addProperty("z", agent.getZ());
+                yield ActionResult.ok(data);
+            }
+            case FAILED -> ActionResult.fail("NAV_FAILED", "Agent stopped before reaching " + target,
+                    "The target may be unreachable or the agent got stuck");
+            case INTERRUPTED -> ActionResult.fail("NAV_INTERRUPTED",
+                    "Navigation to " + target + " was replaced or stopped");
+            case DIED -> ActionResult.fail("AGENT_DEAD", "Agent '" + agent.getAgentName() + "' died on the way");
+            case REMOVED -> ActionResult.fail("AGENT_NOT_FOUND",
+                    "Agent '" + agent.getAgentName() + "' was removed on the way");
+        };
     }
 
     private ActionResult handleStop(ActionContext ctx, JsonObject params) {
@@ -158,7 +380,7 @@ public class ActionRegistry {
         AgentEntity agent = resolveAgent(ctx, params, err);
         if (agent == null) return err[0];
 
-        agent.getNavigation().stop();
+        agent.commandStop();
         agent.commandLookAt(null);
         agent.commandLookAtBlock(null);
         return ActionResult.ok();
@@ -346,48 +568,402 @@ public class ActionRegistry {
 
     // ── Perception ──────────────────────────────────────────────────
 
+    // Perception reads the snapshot published at the end of the last tick (see PerceptionSnapshots),
+    // so it can run on any thread; "tick" tells the client which tick the data belongs to.
+
     private ActionResult handlePerceptionSelf(ActionContext ctx, JsonObject params) {
+        PerceptionSnapshots.Frame frame = PerceptionSnapshots.get().current();
         ActionResult[] err = {null};
-        AgentEntity agent = resolveAgent(ctx, params, err);
+        AgentSnapshot agent = resolveSnapshot(frame, params, err);
         if (agent == null) return err[0];
 
-        JsonObject data = new JsonObject();
-        data.addProperty("name", agent.getAgentName());
+        // "since": the tick of the state the client already holds; answer with what changed after it.
+        if (params.has("since")) {
+            return ActionResult.ok(perceptionSelfChanges(agent, params.get("since").getAsLong()));
+        }
+        return ActionResult.ok(perceptionSelfData(agent));
+    }
 
-        JsonObject pos = new JsonObject();
-        pos.addProperty("x", Math.round(agent.getX() * 10.0) / 10.0);
-        pos.addProperty("y", Math.round(agent.getY() * 10.0) / 10.0);
-        pos.addProperty("z", Math.round(agent.getZ() * 10.0) / 10.0);
-        data.add("position", pos);
+    /**
+     * The full perception.self result for one snapshot.
+     */
+    public static JsonObject perceptionSelfData(AgentSnapshot agent) {
+        JsonObject data = new JsonObject();
+        for (PerceptionField field : PerceptionField.values()) {
+            writePerceptionField(data, agent, field);
+        }
+        data.addProperty("tick", agent.tick());
+        return data;
+    }
 
-        data.addProperty("health", agent.getHealth());
-        data.addProperty("maxHealth", agent.getMaxHealth());
-        data.addProperty("yaw", agent.getYRot());
-        data.addProperty("pitch", agent.getXRot());
-        data.addProperty("isNavigating", agent.getNavigation().isInProgress());
-        data.addProperty("onGround", agent.onGround());
-        data.addProperty("inWater", agent.isInWater());
+    /**
+     * Only the fields that changed after tick {@code since} (plus {@code name} and {@code tick}),
+     * or {@code {"notModified": true, "tick": ...}} if none did.
+     */
+    public static JsonObject perceptionSelfChanges(AgentSnapshot agent, long since) {
+        JsonObject data = new JsonObject();
+        if (agent.versions().latest() <= since) {
+            data.addProperty("notModified", true);
+            data.addProperty("tick", agent.tick());
+            return data;
+        }
+        data.addProperty("name", agent.name());
+        for (PerceptionField field : PerceptionField.values()) {
+            if (agent.versions().changedAt(field) > since) {
+                writePerceptionField(data, agent, field);
+            }
+        }
+        data.addProperty("tick", agent.tick());
+        return data;
+    }
 
-        Entity lookTarget = agent.getLookTarget();
-        data.addProperty("lookTarget", lookTarget != null ? lookTarget.getName().getString() : null);
+    /**
+     * {@code name} plus the given fields, for perception subscriptions.
+     */
+    public static JsonObject perceptionSelfFields(AgentSnapshot agent, Set<PerceptionField> fields) {
+        JsonObject data = new JsonObject();
+        data.addProperty("name", agent.name());
+        for (PerceptionField field : fields) {
+            writePerceptionField(data, agent, field);
+        }
+        return data;
+    }
 
-        data.addProperty("uuid", agent.getStringUUID());
-        return ActionResult.ok(data);
+    private static void writePerceptionField(JsonObject data, AgentSnapshot agent, PerceptionField field) {
+        String name = field.getWireName();
+        switch (field) {
+            case NAME -> data.addProperty(name, agent.name());
+            case POSITION -> {
+                JsonObject pos = new JsonObject();
+                pos.addProperty("x", Math.round(agent.x() * 10.0) / 10.0);
+                pos.addProperty("y", Math.round(agent.y() * 10.0) / 10.0);
+                pos.addProperty("z", Math.round(agent.z() * 10.0) / 10.0);
+                data.add(name, pos);
+            }
+            case HEALTH -> data.addProperty(name, agent.health());
+            case MAX_HEALTH -> data.addProperty(name, agent.maxHealth());
+            case YAW -> data.addProperty(name, agent.yaw());
+            case PITCH -> data.addProperty(name, agent.pitch());
+            case NAVIGATING -> data.addProperty(name, agent.navigating());
+            case ON_GROUND -> data.addProperty(name, agent.onGround());
+            case IN_WATER -> data.addProperty(name, agent.inWater());
+            case LOOK_TARGET -> data.addProperty(name, agent.lookTarget());
+            case UUID -> data.addProperty(name, agent.uuid());
+        }
     }
 
     private ActionResult handlePerceptionAgents(ActionContext ctx, JsonObject params) {
-        List<AgentEntity> agents = ctx.listAgents();
+        PerceptionSnapshots.Frame frame = PerceptionSnapshots.get().current();
         JsonArray arr = new JsonArray();
-        for (AgentEntity agent : agents) {
+        for (AgentSnapshot agent : frame.agents()) {
             JsonObject entry = new JsonObject();
-            entry.addProperty("name", agent.getAgentName());
-            entry.addProperty("uuid", agent.getStringUUID());
-            entry.addProperty("health", agent.getHealth());
-            entry.addProperty("alive", agent.isAlive());
+            entry.addProperty("name", agent.name());
+            entry.addProperty("uuid", agent.uuid());
+            entry.addProperty("health", agent.health());
+            entry.addProperty("alive", agent.alive());
             arr.add(entry);
         }
         JsonObject data = new JsonObject();
         data.add("agents", arr);
+        data.addProperty("tick", frame.tick());
+        return ActionResult.ok(data);
+    }
+
+    private static final int NEARBY_DEFAULT_RADIUS = 16;
+    private static final int NEARBY_DEFAULT_COUNT = 32;
+    private static final int NEARBY_MAX_COUNT = 256;
+
+    /**
+     * Entities around an agent: {@code radius} (blocks), {@code types} (categories such as
+     * "hostile" or entity type IDs), {@code maxCount}, {@code sort} ("distance" or "none").
+     * Runs on the server thread; section scans are shared by every query in the same tick.
+     */
+    private ActionResult handlePerceptionNearby(ActionContext ctx, JsonObject params) {
+        ActionResult[] err = {null};
+        AgentEntity agent = resolveAgent(ctx, params, err);
+        if (agent == null) return err[0];
+
+        int maxRadius = MineAvatarConfig.NEARBY_MAX_RADIUS.get();
+        double radius = params.has("radius") ? params.get("radius").getAsDouble() : NEARBY_DEFAULT_RADIUS;
+        if (radius <= 0 || radius > maxRadius) {
+            return ActionResult.fail("INVALID_PARAM", "'radius' must be between 0 and " + maxRadius);
+        }
+        int maxCount = params.has("maxCount") ? params.get("maxCount").getAsInt() : NEARBY_DEFAULT_COUNT;
+        if (maxCount < 1 || maxCount > NEARBY_MAX_COUNT) {
+            return ActionResult.fail("INVALID_PARAM", "'maxCount' must be between 1 and " + NEARBY_MAX_COUNT);
+        }
+        JsonElement sortParam = params.get("sort");
+        String sort = sortParam == null ? "distance" : sortParam.isJsonPrimitive() ? sortParam.getAsString() : "";
+        if (!sort.equals("distance") && !sort.equals("none")) {
+            return ActionResult.fail("INVALID_PARAM", "'sort' must be 'distance' or 'none'");
+        }
+        List<String> types = new ArrayList<>();
+        if (params.has("types")) {
+            if (!params.get("types").isJsonArray()) {
+                return ActionResult.fail("INVALID_PARAM", "'types' must be an array of entity types or categories");
+            }
+            for (JsonElement type : params.getAsJsonArray("types")) {
+                if (!type.isJsonPrimitive()) {
+                    return ActionResult.fail("INVALID_PARAM", "'types' must be an array of entity types or categories");
+                }
+                types.add(type.getAsString());
+            }
+        }
+
+        long tick = ctx.getServer().getTickCount();
+        // One extra hit tells whether the result was cut off.
+        List<NearbyEntities.Hit> hits = NearbyEntities.get().query((ServerLevel) agent.level(), tick,
+                agent.position(), radius, agent.getId(),
+                entry -> types.isEmpty() || types.stream().anyMatch(type -> NearbyEntities.matchesType(entry, type)),
+                sort.equals("distance"), maxCount + 1);
+
+        JsonArray entities = new JsonArray();
+        for (NearbyEntities.Hit hit : hits.subList(0, Math.min(hits.size(), maxCount))) {
+            NearbyEntities.Entry entry = hit.entry();
+            JsonObject entity = new JsonObject();
+            entity.addProperty("uuid", entry.uuid());
+            entity.addProperty("type", entry.type());
+            entity.addProperty("category", entry.category());
+            entity.addProperty("name", entry.name());
+            JsonObject pos = new JsonObject();
+            pos.addProperty("x", Math.round(entry.x() * 10.0) / 10.0);
+            pos.addProperty("y", Math.round(entry.y() * 10.0) / 10.0);
+            pos.addProperty("z", Math.round(entry.z() * 10.0) / 10.0);
+            entity.add("position", pos);
+            entity.addProperty("distance", Math.round(hit.distance() * 10.0) / 10.0);
+            if (!Float.isNaN(entry.health())) entity.addProperty("health", entry.health());
+            entities.add(entity);
+        }
+
+        JsonObject data = new JsonObject();
+        data.add("entities", entities);
+        data.addProperty("truncated", hits.size() > maxCount);
+        data.addProperty("tick", tick);
+        return ActionResult.ok(data);
+    }
+
+    private static final int REGION_DEFAULT_SIZE = 32;
+
+    /**
+     * Blocks in a cuboid centred on the agent: {@code size} (edge length, default 32) and
+     * optionally {@code sizeY}. The server thread only copies the section containers; palette
+     * building and bit packing run on a background thread. See {@link BlockRegion} for the format.
+     */
+    private CompletableFuture<ActionResult> handlePerceptionRegion(ActionContext ctx, JsonObject params) {
+        ActionResult[] err = {null};
+        AgentEntity agent = resolveAgent(ctx, params, err);
+        if (agent == null) return CompletableFuture.completedFuture(err[0]);
+
+        int maxSize = MineAvatarConfig.REGION_MAX_SIZE.get();
+        int size = params.has("size") ? params.get("size").getAsInt() : REGION_DEFAULT_SIZE;
+        int sizeY = params.has("sizeY") ? params.get("sizeY").getAsInt() : size;
+        if (size < 1 || size > maxSize || sizeY < 1 || sizeY > maxSize) {
+            return CompletableFuture.completedFuture(
+                    ActionResult.fail("INVALID_PARAM", "'size' and 'sizeY' must be between 1 and " + maxSize));
+        }
+
+        BlockPos center = agent.blockPosition();
+        BlockPos origin = center.offset(-size / 2, -sizeY / 2, -size / 2);
+        BlockRegion region = BlockRegion.capture((ServerLevel) agent.level(), origin, size, sizeY, size,
+                ctx.getServer().getTickCount());
+        return CompletableFuture.supplyAsync(() -> {
+            BlockRegion.Encoded encoded = region.encode();
+            return ActionResult.ok(encoded.data()).withBytes("blocks", encoded.blocks());
+        }, Util.backgroundExecutor());
+    }
+
+    private static final double RAYCAST_DEFAULT_DISTANCE = 32;
+    private static final int VISION_DEFAULT_WIDTH = 64;
+    private static final int VISION_DEFAULT_HEIGHT = 36;
+    private static final double VISION_DEFAULT_FOV = 70;
+
+    /**
+     * Many rays from the agent's eyes: {@code rays} is an array of {@code {yaw, pitch}} (degrees)
+     * or {@code {dx, dy, dz}} objects, {@code maxDistance} defaults to 32. The server thread copies
+     * the sections in reach (at most as many as a {@code perception.regionMaxSize} cube, else
+     * {@code INVALID_PARAM}); the rays are cast on a background thread. See {@link RayCaster} for
+     * the {@code hits} layout.
+     */
+    private CompletableFuture<ActionResult> handlePerceptionRaycast(ActionContext ctx, JsonObject params) {
+        ActionResult[] err = {null};
+        AgentEntity agent = resolveAgent(ctx, params, err);
+        if (agent == null) return CompletableFuture.completedFuture(err[0]);
+
+        if (!params.has("rays") || !params.get("rays").isJsonArray()) {
+            return CompletableFuture.completedFuture(
+                    ActionResult.fail("MISSING_PARAM", "Parameter 'rays' (array of {yaw, pitch} or {dx, dy, dz}) is required"));
+        }
+        JsonArray rays = params.getAsJsonArray("rays");
+        int maxRays = MineAvatarConfig.RAYCAST_MAX_RAYS.get();
+        if (rays.isEmpty() || rays.size() > maxRays) {
+            return CompletableFuture.completedFuture(
+                    ActionResult.fail("INVALID_PARAM", "'rays' must hold between 1 and " + maxRays + " rays"));
+        }
+        double[] directions = new double[rays.size() * 3];
+        for (int i = 0; i < rays.size(); i++) {
+            JsonObject ray = rays.get(i).isJsonObject() ? rays.get(i).getAsJsonObject() : new JsonObject();
+            if (ray.has("yaw") && ray.has("pitch")) {
+                double yaw = Math.toRadians(ray.get("yaw").getAsDouble());
+                double pitch = Math.toRadians(ray.get("pitch").getAsDouble());
+                directions[i * 3] = -Math.sin(yaw) * Math.cos(pitch);
+                directions[i * 3 + 1] = -Math.sin(pitch);
+                directions[i * 3 + 2] = Math.cos(yaw) * Math.cos(pitch);
+            } else if (ray.has("dx") && ray.has("dy") && ray.has("dz")) {
+                directions[i * 3] = ray.get("dx").getAsDouble();
+                directions[i * 3 + 1] = ray.get("dy").getAsDouble();
+                directions[i * 3 + 2] = ray.get("dz").getAsDouble();
+            } else {
+                return CompletableFuture.completedFuture(ActionResult.fail("INVALID_PARAM",
+                        "Ray " + i + " needs either 'yaw' and 'pitch' or 'dx', 'dy' and 'dz'"));
+            }
+        }
+        double maxDistance = raycastDistance(params, err);
+        if (err[0] != null) return CompletableFuture.completedFuture(err[0]);
+
+        Vec3 eye = agent.getEyePosition();
+        BlockRegion region = captureReach((ServerLevel) agent.level(), eye, directions, maxDistance,
+                ctx.getServer().getTickCount());
+        if (region == null) return CompletableFuture.completedFuture(reachTooLarge());
+        return CompletableFuture.supplyAsync(() -> {
+            RayCaster caster = new RayCaster(region, maxDistance);
+            byte[] hits = caster.castAll(eye.x, eye.y, eye.z, directions);
+            JsonObject data = new JsonObject();
+            data.addProperty("rays", rays.size());
+            data.add("origin", vec3ToJson(eye));
+            data.addProperty("maxDistance", maxDistance);
+            data.add("palette", caster.getPalette());
+            data.addProperty("tick", region.getTick());
+            return ActionResult.ok(data).withBytes("hits", hits);
+        }, Util.backgroundExecutor());
+    }
+
+    /**
+     * A small depth and block image of what the agent faces: {@code width} (default 64),
+     * {@code height} (default 36), vertical {@code fov} in degrees (default 70) and
+     * {@code maxDistance} (default 32), from the eyes along the head's yaw and the pitch.
+     * Returns {@code depth} (float32 per pixel) and {@code blocks} (int32 palette index per pixel),
+     * both little-endian, rows top to bottom.
+     */
+    private CompletableFuture<ActionResult> handlePerceptionVision(ActionContext ctx, JsonObject params) {
+        ActionResult[] err = {null};
+        AgentEntity agent = resolveAgent(ctx, params, err);
+        if (agent == null) return CompletableFuture.completedFuture(err[0]);
+
+        int width = params.has("width") ? params.get("width").getAsInt() : VISION_DEFAULT_WIDTH;
+        int height = params.has("height") ? params.get("height").getAsInt() : VISION_DEFAULT_HEIGHT;
+        int maxPixels = MineAvatarConfig.RAYCAST_MAX_RAYS.get();
+        if (width < 1 || height < 1 || (long) width * height > maxPixels) {
+            return CompletableFuture.completedFuture(ActionResult.fail("INVALID_PARAM",
+                    "'width' and 'height' must be positive with at most " + maxPixels + " pixels in total"));
+        }
+        double fov = params.has("fov") ? params.get("fov").getAsDouble() : VISION_DEFAULT_FOV;
+        if (fov <= 0 || fov >= 180) {
+            return CompletableFuture.completedFuture(
+                    ActionResult.fail("INVALID_PARAM", "'fov' must be between 0 and 180 degrees"));
+        }
+        double maxDistance = raycastDistance(params, err);
+        if (err[0] != null) return CompletableFuture.completedFuture(err[0]);
+
+        Vec3 eye = agent.getEyePosition();
+        float yaw = agent.getYHeadRot();
+        float pitch = agent.getXRot();
+        double[] directions = RayCaster.cameraDirections(yaw, pitch, fov, width, height);
+        BlockRegion region = captureReach((ServerLevel) agent.level(), eye, directions, maxDistance,
+                ctx.getServer().getTickCount());
+        if (region == null) return CompletableFuture.completedFuture(reachTooLarge());
+        return CompletableFuture.supplyAsync(() -> {
+            RayCaster caster = new RayCaster(region, maxDistance);
+            ByteBuffer depth = ByteBuffer.allocate(width * height * 4).order(ByteOrder.LITTLE_ENDIAN);
+            ByteBuffer blocks = ByteBuffer.allocate(width * height * 4).order(ByteOrder.LITTLE_ENDIAN);
+            caster.render(eye.x, eye.y, eye.z, directions, depth, blocks);
+            JsonObject data = new JsonObject();
+            data.addProperty("width", width);
+            data.addProperty("height", height);
+            data.addProperty("fov", fov);
+            data.addProperty("maxDistance", maxDistance);
+            data.add("origin", vec3ToJson(eye));
+            data.addProperty("yaw", yaw);
+            data.addProperty("pitch", pitch);
+            data.add("palette", caster.getPalette());
+            data.addProperty("tick", region.getTick());
+            return ActionResult.ok(data)
+                    .withBytes("depth", depth.array())
+                    .withBytes("blocks", blocks.array());
+        }, Util.backgroundExecutor());
+    }
+
+    private static double raycastDistance(JsonObject params, ActionResult[] err) {
+        int max = MineAvatarConfig.RAYCAST_MAX_DISTANCE.get();
+        double distance = params.has("maxDistance") ? params.get("maxDistance").getAsDouble() : Math.min(RAYCAST_DEFAULT_DISTANCE, max);
+        if (distance <= 0 || distance > max) {
+            err[0] = ActionResult.fail("INVALID_PARAM", "'maxDistance' must be between 0 and " + max);
+        }
+        return distance;
+    }
+
+    /**
+     * Copy the sections the given rays of {@code maxDistance} from {@code origin} can reach: the
+     * bounding box of the origin and every ray's end point, plus a block of margin. A narrow view
+     * or a few rays thus copy far fewer sections than the whole cube of reach. Returns null,
+     * copying nothing, if the box spans more sections than a {@code perception.regionMaxSize}
+     * cube can. Server thread only.
+     */
+    @Nullable
+    private static BlockRegion captureReach(ServerLevel level, Vec3 origin, double[] directions,
+                                            double maxDistance, long tick) {
+        double[] start = {origin.x, origin.y, origin.z};
+        double[] min = start.clone();
+        double[] max = start.clone();
+        for (int i = 0; i < directions.length / 3; i++) {
+            double length = Math.sqrt(directions[i * 3] * directions[i * 3]
+                    + directions[i * 3 + 1] * directions[i * 3 + 1]
+                    + directions[i * 3 + 2] * directions[i * 3 + 2]);
+            if (length == 0) continue;
+            for (int axis = 0; axis < 3; axis++) {
+                double end = start[axis] + directions[i * 3 + axis] * maxDistance / length;
+                min[axis] = Math.min(min[axis], end);
+                max[axis] = Math.max(max[axis], end);
+            }
+        }
+        BlockPos corner = BlockPos.containing(min[0] - 1, min[1] - 1, min[2] - 1);
+        BlockPos far = BlockPos.containing(max[0] + 1, max[1] + 1, max[2] + 1);
+        long sections = (long) sectionSpan(corner.getX(), far.getX())
+                * sectionSpan(corner.getY(), far.getY()) * sectionSpan(corner.getZ(), far.getZ());
+        if (sections > maxReachSections()) return null;
+        return BlockRegion.capture(level, corner, far.getX() - corner.getX() + 1,
+                far.getY() - corner.getY() + 1, far.getZ() - corner.getZ() + 1, tick);
+    }
+
+    /** Sections along one axis between two block coordinates, inclusive. */
+    private static int sectionSpan(int from, int to) {
+        return SectionPos.blockToSectionCoord(to) - SectionPos.blockToSectionCoord(from) + 1;
+    }
+
+    /** Sections an unaligned {@code perception.regionMaxSize} cube can touch. */
+    private static long maxReachSections() {
+        long perAxis = (MineAvatarConfig.REGION_MAX_SIZE.get() + 15) / 16 + 1;
+        return perAxis * perAxis * perAxis;
+    }
+
+    private static ActionResult reachTooLarge() {
+        return ActionResult.fail("INVALID_PARAM",
+                "The rays reach more than " + maxReachSections() + " chunk sections (perception.regionMaxSize)",
+                "Use a smaller 'maxDistance', a narrower field of view or fewer directions");
+    }
+
+    private static JsonObject vec3ToJson(Vec3 pos) {
+        JsonObject json = new JsonObject();
+        json.addProperty("x", Math.round(pos.x * 100.0) / 100.0);
+        json.addProperty("y", Math.round(pos.y * 100.0) / 100.0);
+        json.addProperty("z", Math.round(pos.z * 100.0) / 100.0);
+        return json;
+    }
+
+    // ── Server ──────────────────────────────────────────────────────
+
+    private ActionResult handleServerStats(ActionContext ctx, JsonObject params) {
+        JsonObject data = new JsonObject();
+        data.add("scheduler", ActionScheduler.get().statsToJson());
         return ActionResult.ok(data);
     }
 }
@@ -3,10 +3,16 @@ package com.mineavatar.action;
 import com.google.gson.JsonObject;
 
 import javax.annotation.Nullable;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 /**
  * Unified return type for all agent actions.
  * Serializable to JSON for WebSocket, and convertible to human-readable text for commands.
+ *
+ * Bulk binary payloads are attached with {@link #withBytes} instead of being put into {@code data}:
+ * the binary codec sends them as raw bytes, JSON (and {@link #toJson()}) as base64 strings.
  */
 public class ActionResult {
 
@@ -15,6 +21,8 @@ public class ActionResult {
     @Nullable private final String error;
     @Nullable private final String message;
     @Nullable private final String hint;
+    /** Byte-array members of {@code data}, in insertion order. */
+    private final Map<String, byte[]> bytes = new LinkedHashMap<>();
 
     private ActionResult(boolean success, JsonObject data, @Nullable String error,
                          @Nullable String message, @Nullable String hint) {
@@ -47,8 +55,17 @@ public class ActionResult {
         return new ActionResult(false, new JsonObject(), error, message, hint);
     }
 
+    /**
+     * Add a raw byte field to the data object of a successful result.
+     */
+    public ActionResult withBytes(String key, byte[] value) {
+        bytes.put(key, value);
+        return this;
+    }
+
     public boolean isSuccess() { return success; }
     public JsonObject getData() { return data; }
+    public Map<String, byte[]> getBytes() { return bytes; }
     @Nullable public String getError() { return error; }
     @Nullable public String getMessage() { return message; }
     @Nullable public String getHint() { return hint; }
@@ -57,7 +74,13 @@ public class ActionResult {
         JsonObject json = new JsonObject();
         json.addProperty("success", success);
         if (success) {
-            json.add("data", data);
+            if (bytes.isEmpty()) {
+                json.add("data", data);
+            } else {
+                JsonObject withBytes = data.deepCopy();
+                bytes.forEach((key, value) -> withBytes.addProperty(key, Base64.getEncoder().encodeToString(value)));
+                json.add("data", withBytes);
+            }
         } else {
             json.addProperty("error", error);
             json.addProperty("message", message);
@@ -71,7 +94,10 @@ public class ActionResult {
      */
     public String toReadable() {
         if (success) {
-            return data.size() == 0 ? "OK" : data.toString();
+            if (data.size() == 0 && bytes.isEmpty()) return "OK";
+            StringBuilder text = new StringBuilder(data.toString());
+            bytes.forEach((key, value) -> text.append(' ').append(key).append(": ").append(value.length).append(" bytes"));
+            return text.toString();
         }
         String text = error + ": " + message;
         if (hint != null) text += " (" + hint + ")";
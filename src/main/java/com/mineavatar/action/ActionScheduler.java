@@ -0,0 +1,290 @@
+package com.mineavatar.action;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.mineavatar.MineAvatar;
+import com.mineavatar.MineAvatarConfig;
+import net.minecraft.server.MinecraftServer;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tick-budgeted queue between the network layer and {@link ActionRegistry}.
+ *
+ * Network threads {@link #submit} groups of {@link PendingAction}s; the server thread drains
+ * them once per tick in {@link #tick} until the configured nanosecond budget is spent. Whatever
+ * does not fit carries over to the next tick, so a burst from one controller cannot stall the server.
+ *
+ * Each {@link ActionPriority} has its own lane, drained in order. The CONTROL lane is emptied
+ * every tick regardless of budget and may use {@code scheduler.controlHeadroom} beyond the depth
+ * cap, so a stop is not stuck behind a perception burst; only groups made entirely of CONTROL
+ * actions go there, so a stop cannot carry a large batch past the cap or the budget. NORMAL and
+ * BULK share the budget, and each gets at least one group per tick so neither starves.
+ *
+ * Actions that were cancelled while queued are skipped, and actions past their deadline are
+ * answered with {@code DEADLINE_EXCEEDED} instead of being dispatched — neither costs a handler call.
+ *
+ * Last-writer-wins methods (see {@link ActionRegistry#setCoalesceSlots}) are coalesced per agent
+ * on submit: a queued call whose slots are all overwritten by a newer call is answered with
+ * {@code SUPERSEDED} and never runs, so a lagging server does one path search instead of ten.
+ */
+public class ActionScheduler {
+
+    private static final ActionPriority[] LANES = ActionPriority.values();
+    private static final ActionScheduler INSTANCE = new ActionScheduler();
+
+    private final List<Queue<List<PendingAction>>> lanes = new ArrayList<>();
+    private final AtomicInteger[] laneDepth = new AtomicInteger[LANES.length];
+    private final AtomicInteger depth = new AtomicInteger();
+    /** agent name → coalesce slot → newest queued action writing it. Guarded by itself. */
+    private final Map<String, Map<String, PendingAction>> latestByAgent = new HashMap<>();
+
+    // Stats — written on the server thread, read from anywhere.
+    private volatile long lastTickNanos;
+    private volatile long maxTickNanos;
+    private volatile int lastTickExecuted;
+    private volatile int lastTickCarriedOver;
+    private volatile long totalExecuted;
+    private volatile long totalCarriedOver;
+    private volatile long totalExpired;
+    private volatile long totalSkipped;
+    private final AtomicLong totalSuperseded = new AtomicLong();
+    private final AtomicInteger totalRejected = new AtomicInteger();
+
+    public static ActionScheduler get() { return INSTANCE; }
+
+    private ActionScheduler() {
+        for (int i = 0; i < LANES.length; i++) {
+            lanes.add(new ConcurrentLinkedQueue<>());
+            laneDepth[i] = new AtomicInteger();
+        }
+    }
+
+    /**
+     * Queue a group of actions for the server thread; a group always runs within one tick,
+     * in order, in the lane given by {@link #laneOf}. Safe to call from any thread.
+     * @return false if the queue is full and the group was not accepted
+     */
+    public boolean submit(List<PendingAction> group) {
+        ActionPriority lane = laneOf(group);
+        int size = group.size();
+        int maxDepth = MineAvatarConfig.SCHEDULER_MAX_QUEUE_DEPTH.get();
+        if (lane == ActionPriority.CONTROL) {
+            maxDepth += MineAvatarConfig.SCHEDULER_CONTROL_HEADROOM.get();
+        }
+        if (depth.addAndGet(size) > maxDepth) {
+            depth.addAndGet(-size);
+            totalRejected.incrementAndGet();
+            return false;
+        }
+        coalesce(group);
+        laneDepth[lane.ordinal()].addAndGet(size);
+        lanes.get(lane.ordinal()).add(group);
+        return true;
+    }
+
+    /**
+     * CONTROL if every action of the group is; otherwise the most urgent of the other actions,
+     * so control actions mixed into a batch get no budget or depth exemption for it.
+     */
+    private static ActionPriority laneOf(List<PendingAction> group) {
+        ActionRegistry registry = ActionRegistry.get();
+        ActionPriority lane = null;
+        for (PendingAction action : group) {
+            ActionPriority priority = registry.priority(action.getMethod());
+            if (priority != ActionPriority.CONTROL && (lane == null || priority.ordinal() < lane.ordinal())) {
+                lane = priority;
+            }
+        }
+        return lane != null ? lane : ActionPriority.CONTROL;
+    }
+
+    /**
+     * Record each coalescing action as the newest writer of its slots and supersede older
+     * queued actions for the same agent whose slots are a subset of the new one's.
+     */
+    private void coalesce(List<PendingAction> group) {
+        ActionRegistry registry = ActionRegistry.get();
+        List<PendingAction> superseded = new ArrayList<>();
+        synchronized (latestByAgent) {
+            for (PendingAction action : group) {
+                Set<String> slots = registry.coalesceSlots(action.getMethod());
+                String agent = agentOf(action);
+                if (slots.isEmpty() || agent == null) continue;
+                action.coalesceAgent = agent;
+                action.coalesceSlots = slots;
+
+                Map<String, PendingAction> latest = latestByAgent.computeIfAbsent(agent, k -> new HashMap<>());
+                for (String slot : slots) {
+                    PendingAction older = latest.put(slot, action);
+                    if (older != null && older != action && slots.containsAll(older.coalesceSlots)
+                            && !superseded.contains(older)) {
+                        superseded.add(older);
+                    }
+                }
+            }
+        }
+        for (PendingAction older : superseded) {
+            if (older.abort(ActionResult.fail("SUPERSEDED",
+                    "Replaced by a newer queued command for agent '" + older.coalesceAgent + "'"))) {
+                totalSuperseded.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Drop a dequeued action from the coalescing index.
+     */
+    private void forget(PendingAction action) {
+        String agent = action.coalesceAgent;
+        if (agent == null) return;
+        synchronized (latestByAgent) {
+            Map<String, PendingAction> latest = latestByAgent.get(agent);
+            if (latest == null) return;
+            for (String slot : action.coalesceSlots) {
+                latest.remove(slot, action);
+            }
+            if (latest.isEmpty()) latestByAgent.remove(agent);
+        }
+    }
+
+    @Nullable
+    private static String agentOf(PendingAction action) {
+        JsonElement agent = action.getParams().get("agent");
+        return agent != null && agent.isJsonPrimitive() ? agent.getAsString() : null;
+    }
+
+    /**
+     * Drain queued actions lane by lane within the tick budget.
+     * Must be called on the server main thread, once per tick.
+     */
+    public void tick(MinecraftServer server) {
+        long budget = MineAvatarConfig.SCHEDULER_TICK_BUDGET_NANOS.get();
+        long start = System.nanoTime();
+        ActionContext ctx = new ActionContext(server);
+        ActionRegistry registry = ActionRegistry.get();
+        int executed = 0;
+        int expired = 0;
+        int skipped = 0;
+
+        long now = start;
+        for (ActionPriority lane : LANES) {
+            Queue<List<PendingAction>> queue = lanes.get(lane.ordinal());
+            boolean ranGroup = false;
+            while (lane == ActionPriority.CONTROL || !ranGroup || now - start < budget) {
+                List<PendingAction> group = queue.poll();
+                if (group == null) break;
+                depth.addAndGet(-group.size());
+                laneDepth[lane.ordinal()].addAndGet(-group.size());
+                for (PendingAction action : group) {
+                    forget(action);
+                    if (action.isExpired(now) && action.abort(ActionResult.fail("DEADLINE_EXCEEDED",
+                            "Request deadline passed before it could run",
+                            "The server is lagging; retry with a longer timeoutMs"))) {
+                        expired++;
+                    } else if (action.start()) {
+                        run(action, ctx, registry);
+                        executed++;
+                    } else {
+                        skipped++;  // cancelled or superseded while queued
+                    }
+                }
+                ranGroup = true;
+                now = System.nanoTime();
+            }
+        }
+
+        long spent = now - start;
+        int carried = depth.get();
+        lastTickNanos = spent;
+        if (spent > maxTickNanos) maxTickNanos = spent;
+        lastTickExecuted = executed;
+        lastTickCarriedOver = carried;
+        totalExecuted += executed;
+        totalCarriedOver += carried;
+        totalExpired += expired;
+        totalSkipped += skipped;
+    }
+
+    /**
+     * Dispatch one action. Async actions that do not finish right away are completed whenever
+     * their future does, bounded by {@code scheduler.asyncTimeoutSeconds}. Whatever goes wrong,
+     * the action is completed, so the client, its pending count and the replay cache never hang.
+     */
+    private static void run(PendingAction action, ActionContext ctx, ActionRegistry registry) {
+        try {
+            CompletableFuture<ActionResult> future = registry.dispatchAsync(action.getMethod(), ctx, action.getParams());
+            if (future.isDone()) {
+                action.complete(future.join());
+                return;
+            }
+            action.markWaiting();
+            int timeoutSeconds = MineAvatarConfig.SCHEDULER_ASYNC_TIMEOUT_SECONDS.get();
+            future.completeOnTimeout(ActionResult.fail("ASYNC_TIMEOUT",
+                            "Action did not finish within " + timeoutSeconds + " s"),
+                            timeoutSeconds, TimeUnit.SECONDS)
+                    .exceptionally(e -> {
+                        MineAvatar.LOGGER.error("Scheduled action '{}' failed asynchronously", action.getMethod(), e);
+                        return ActionResult.fail("INTERNAL_ERROR", String.valueOf(e.getMessage()));
+                    })
+                    .thenAccept(action::complete);
+        } catch (Exception e) {
+            MineAvatar.LOGGER.error("Scheduled action '{}' threw exception", action.getMethod(), e);
+            action.complete(ActionResult.fail("INTERNAL_ERROR", String.valueOf(e.getMessage())));
+        }
+    }
+
+    /**
+     * Cancel all queued actions (server shutdown).
+     */
+    public void clear() {
+        for (int i = 0; i < LANES.length; i++) {
+            List<PendingAction> group;
+            while ((group = lanes.get(i).poll()) != null) {
+                group.forEach(PendingAction::cancel);
+            }
+            laneDepth[i].set(0);
+        }
+        depth.set(0);
+        synchronized (latestByAgent) {
+            latestByAgent.clear();
+        }
+    }
+
+    public int getQueueDepth() { return depth.get(); }
+    public long getLastTickNanos() { return lastTickNanos; }
+    public int getLastTickCarriedOver() { return lastTickCarriedOver; }
+
+    public JsonObject statsToJson() {
+        JsonObject json = new JsonObject();
+        json.addProperty("queueDepth", depth.get());
+        JsonObject laneDepths = new JsonObject();
+        for (ActionPriority lane : LANES) {
+            laneDepths.addProperty(lane.getWireName(), laneDepth[lane.ordinal()].get());
+        }
+        json.add("laneDepth", laneDepths);
+        json.addProperty("tickBudgetNanos", MineAvatarConfig.SCHEDULER_TICK_BUDGET_NANOS.get());
+        json.addProperty("lastTickNanos", lastTickNanos);
+        json.addProperty("maxTickNanos", maxTickNanos);
+        json.addProperty("lastTickExecuted", lastTickExecuted);
+        json.addProperty("lastTickCarriedOver", lastTickCarriedOver);
+        json.addProperty("totalExecuted", totalExecuted);
+        json.addProperty("totalCarriedOver", totalCarriedOver);
+        json.addProperty("totalRejected", totalRejected.get());
+        json.addProperty("totalExpired", totalExpired);
+        json.addProperty("totalSkipped", totalSkipped);
+        json.addProperty("totalSuperseded", totalSuperseded.get());
+        return json;
+    }
+}
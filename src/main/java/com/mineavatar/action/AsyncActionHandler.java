@@ -0,0 +1,15 @@
+package com.mineavatar.action;
+
+import com.google.gson.JsonObject;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Handler whose result may arrive on a later tick (e.g. when an agent reaches its target).
+ * Called on the server main thread; the future must also be completed there, or on any thread
+ * that does not touch the world.
+ */
+@FunctionalInterface
+public interface AsyncActionHandler {
+    CompletableFuture<ActionResult> execute(ActionContext ctx, JsonObject params);
+}
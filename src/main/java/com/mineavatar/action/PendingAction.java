@@ -0,0 +1,105 @@
+package com.mineavatar.action;
+
+import com.google.gson.JsonObject;
+
+import javax.annotation.Nullable;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * One action waiting in {@link ActionScheduler}. Completes exactly once — by running,
+ * by expiring, or by being cancelled or superseded from another thread — and hands its
+ * result to the callback of whoever submitted it.
+ *
+ * Once the server thread has started running an action it can no longer be aborted,
+ * so a client is never told "cancelled" about something that already happened. The one
+ * exception is an async action that is waiting for a later tick: aborting it only gives up
+ * on the reply, not on what the handler already did.
+ */
+public class PendingAction {
+
+    private static final int QUEUED = 0;
+    private static final int RUNNING = 1;
+    private static final int WAITING = 2;
+    private static final int DONE = 3;
+
+    private final String method;
+    private final JsonObject params;
+    private final long deadlineNanos;
+    private final Consumer<ActionResult> onComplete;
+    private final AtomicInteger state = new AtomicInteger(QUEUED);
+    private volatile boolean started;
+
+    // Coalescing key, filled in by ActionScheduler on submit.
+    @Nullable
+    String coalesceAgent;
+    Set<String> coalesceSlots = Set.of();
+
+    /**
+     * @param deadlineNanos {@link System#nanoTime()} after which the action is dropped, or 0 for none
+     */
+    public PendingAction(String method, JsonObject params, long deadlineNanos, Consumer<ActionResult> onComplete) {
+        this.method = method;
+        this.params = params;
+        this.deadlineNanos = deadlineNanos;
+        this.onComplete = onComplete;
+    }
+
+    public String getMethod() { return method; }
+    public JsonObject getParams() { return params; }
+
+    public boolean isCompleted() { return state.get() == DONE; }
+
+    /** True once the server thread has claimed the action, i.e. its handler ran or is running. */
+    public boolean wasStarted() { return started; }
+
+    public boolean isExpired(long nowNanos) {
+        return deadlineNanos != 0 && nowNanos - deadlineNanos > 0;
+    }
+
+    /**
+     * Claim a queued action for execution; after this it can only be completed, not aborted.
+     * @return false if it was already aborted
+     */
+    boolean start() {
+        if (!state.compareAndSet(QUEUED, RUNNING)) return false;
+        started = true;
+        return true;
+    }
+
+    /**
+     * The handler returned an unfinished future; the action may be aborted again until it completes.
+     */
+    void markWaiting() {
+        state.compareAndSet(RUNNING, WAITING);
+    }
+
+    /**
+     * Complete with the given result unless already completed.
+     * @return true if this call completed the action
+     */
+    public boolean complete(ActionResult result) {
+        if (state.getAndSet(DONE) == DONE) return false;
+        onComplete.accept(result);
+        return true;
+    }
+
+    /**
+     * Complete with the given result only if the action has not started running
+     * (or is an async action waiting for a later tick).
+     * @return true if this call completed the action
+     */
+    public boolean abort(ActionResult result) {
+        if (!state.compareAndSet(QUEUED, DONE) && !state.compareAndSet(WAITING, DONE)) return false;
+        onComplete.accept(result);
+        return true;
+    }
+
+    /**
+     * Complete with {@code REQUEST_CANCELLED} unless the action already started (see {@link #abort}).
+     */
+    public boolean cancel() {
+        return abort(ActionResult.fail("REQUEST_CANCELLED", "Request was cancelled before it ran"));
+    }
+}
@@ -1,6 +1,10 @@
 package com.mineavatar.entity;
 
+import com.google.gson.JsonObject;
 import com.mineavatar.MineAvatar;
+import com.mineavatar.MineAvatarConfig;
+import com.mineavatar.event.AgentEventHub;
+import com.mineavatar.event.WorldEvents;
 
 import net.minecraft.nbt.CompoundTag;
 import net.minecraft.network.chat.Component;
@@ -18,14 +22,18 @@ import net.minecraft.world.entity.LivingEntity;
 import net.minecraft.world.entity.PathfinderMob;
 import net.minecraft.world.entity.ai.attributes.AttributeSupplier;
 import net.minecraft.world.entity.ai.attributes.Attributes;
+import net.minecraft.world.entity.item.ItemEntity;
 import net.minecraft.world.entity.player.Player;
 import net.minecraft.world.level.Level;
+import net.minecraft.world.level.pathfinder.Path;
+import net.minecraft.world.phys.Vec3;
 
 import net.minecraft.core.BlockPos;
 
 import javax.annotation.Nullable;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Agent entity — a command-driven humanoid mob.
@@ -51,6 +59,23 @@ public class AgentEntity extends PathfinderMob {
     @Nullable
     private BlockPos lookBlockTarget;
 
+    /** Target of the current commandMoveTo, until it arrives, fails or is interrupted. */
+    @Nullable
+    private Vec3 navTarget;
+
+    @Nullable
+    private CompletableFuture<NavOutcome> navOutcome;
+
+    /** Navigation tracking for the nav.* events (server side only). */
+    @Nullable
+    private Path trackedPath;
+    private int lastProgressTick;
+    /** The path changed since the last nav.progress; reported with the next one. */
+    private boolean pathRecomputed;
+    private Vec3 stuckCheckPos = Vec3.ZERO;
+    private int stuckCheckTick;
+    private boolean stuckReported;
+
     public AgentEntity(EntityType<? extends AgentEntity> entityType, Level level) {
         super(entityType, level);
         this.setCustomNameVisible(true);
@@ -59,6 +84,8 @@ public class AgentEntity extends PathfinderMob {
     }
 
     private static final int REGEN_INTERVAL_TICKS = 80;
+    private static final double ARRIVAL_DISTANCE_SQR = 2.0 * 2.0;
+    private static final double STUCK_DISTANCE_SQR = 0.25 * 0.25;
 
     public static AttributeSupplier.Builder createAttributes() {
         return PathfinderMob.createMobAttributes()
@@ -96,8 +123,16 @@ public class AgentEntity extends PathfinderMob {
      * @return true if a path was successfully started
      */
     public boolean commandMoveTo(double x, double y, double z) {
+        finishNavigation(NavOutcome.INTERRUPTED);
         boolean started = this.getNavigation().moveTo(x, y, z, 1.0);
         if (started) {
+            navTarget = new Vec3(x, y, z);
+            trackedPath = null;
+            lastProgressTick = -1;
+            pathRecomputed = false;
+            stuckCheckPos = position();
+            stuckCheckTick = tickCount;
+            stuckReported = false;
             MineAvatar.LOGGER.debug("Agent '{}' moving to ({}, {}, {})", getAgentName(), x, y, z);
         } else {
             MineAvatar.LOGGER.debug("Agent '{}' could not find path to ({}, {}, {})", getAgentName(), x, y, z);
@@ -105,6 +140,115 @@ public class AgentEntity extends PathfinderMob {
         return started;
     }
 
+    /**
+     * Stop the current navigation; a pending {@link #awaitNavigation()} completes as INTERRUPTED.
+     */
+    public void commandStop() {
+        finishNavigation(NavOutcome.INTERRUPTED);
+        this.getNavigation().stop();
+    }
+
+    public enum NavOutcome {
+        ARRIVED, FAILED, INTERRUPTED, DIED, REMOVED
+    }
+
+    /**
+     * Future for the end of the current commandMoveTo, completed on the server thread:
+     * ARRIVED when navigation ends within 2 blocks of the target, FAILED when it ends elsewhere
+     * (no full path, stuck), INTERRUPTED by a newer moveTo or a stop, DIED / REMOVED with the agent.
+     * Already FAILED if no navigation is in progress.
+     */
+    public CompletableFuture<NavOutcome> awaitNavigation() {
+        if (navTarget == null) {
+            return CompletableFuture.completedFuture(NavOutcome.FAILED);
+        }
+        if (navOutcome == null) {
+            navOutcome = new CompletableFuture<>();
+        }
+        return navOutcome;
+    }
+
+    private void finishNavigation(NavOutcome outcome) {
+        if (navTarget != null && !level().isClientSide) {
+            publishNavigationEnd(outcome);
+        }
+        navTarget = null;
+        trackedPath = null;
+        CompletableFuture<NavOutcome> pending = navOutcome;
+        navOutcome = null;
+        if (pending != null) {
+            pending.complete(outcome);
+        }
+    }
+
+    /**
+     * Push nav.progress (remaining path nodes and distance to the target) at most once per
+     * {@code events.navProgressIntervalTicks}, with {@code recomputed} set if the path changed
+     * since the previous one (a mob re-pathing every tick still gets one update per interval),
+     * and nav.stuck once if the agent has barely moved for {@code events.navStuckTicks}.
+     */
+    private void tickNavigationEvents() {
+        Path path = this.getNavigation().getPath();
+        if (path != null && trackedPath != null && path != trackedPath) {
+            pathRecomputed = true;
+        }
+        if (path != null) {
+            trackedPath = path;
+        }
+        if (lastProgressTick < 0
+                || tickCount - lastProgressTick >= MineAvatarConfig.NAV_PROGRESS_INTERVAL_TICKS.get()) {
+            lastProgressTick = tickCount;
+            JsonObject data = navigationData();
+            data.addProperty("remainingNodes", path != null ? path.getNodeCount() - path.getNextNodeIndex() : 0);
+            data.addProperty("recomputed", pathRecomputed);
+            pathRecomputed = false;
+            AgentEventHub.get().publish("nav.progress", getAgentName(), data);
+        }
+
+        if (position().distanceToSqr(stuckCheckPos) >= STUCK_DISTANCE_SQR) {
+            stuckCheckPos = position();
+            stuckCheckTick = tickCount;
+            stuckReported = false;
+        } else if (!stuckReported && tickCount - stuckCheckTick >= MineAvatarConfig.NAV_STUCK_TICKS.get()) {
+            stuckReported = true;
+            JsonObject data = navigationData();
+            data.addProperty("ticks", tickCount - stuckCheckTick);
+            AgentEventHub.get().publish("nav.stuck", getAgentName(), data);
+        }
+    }
+
+    private void publishNavigationEnd(NavOutcome outcome) {
+        JsonObject data = navigationData();
+        if (outcome == NavOutcome.ARRIVED) {
+            AgentEventHub.get().publish("nav.arrived", getAgentName(), data);
+            return;
+        }
+        data.addProperty("reason", switch (outcome) {
+            case FAILED -> "unreachable";
+            case INTERRUPTED -> "interrupted";
+            case DIED -> "died";
+            default -> "removed";
+        });
+        AgentEventHub.get().publish("nav.failed", getAgentName(), data);
+    }
+
+    /** Target, position and distance fields shared by all nav.* events. */
+    private JsonObject navigationData() {
+        JsonObject target = new JsonObject();
+        target.addProperty("x", navTarget.x);
+        target.addProperty("y", navTarget.y);
+        target.addProperty("z", navTarget.z);
+        JsonObject pos = new JsonObject();
+        pos.addProperty("x", Math.round(getX() * 10.0) / 10.0);
+        pos.addProperty("y", Math.round(getY() * 10.0) / 10.0);
+        pos.addProperty("z", Math.round(getZ() * 10.0) / 10.0);
+        JsonObject data = new JsonObject();
+        data.add("target", target);
+        data.add("position", pos);
+        data.addProperty("distance", Math.round(Math.sqrt(position().distanceToSqr(navTarget)) * 10.0) / 10.0);
+        return data;
+    }
+
     /**
      * Set the agent to continuously look at a target entity.
      * Pass null to clear the look target.
@@ -179,6 +323,13 @@ public class AgentEntity extends PathfinderMob {
     public void tick() {
         super.tick();
 
+        if (navTarget != null && !level().isClientSide && this.getNavigation().isDone()) {
+            finishNavigation(position().distanceToSqr(navTarget) <= ARRIVAL_DISTANCE_SQR
+                    ? NavOutcome.ARRIVED : NavOutcome.FAILED);
+        } else if (navTarget != null && !level().isClientSide) {
+            tickNavigationEvents();
+        }
+
         if (lookTarget != null) {
             if (lookTarget.isAlive() && lookTarget.level() == this.level()) {
                 this.getLookControl().setLookAt(lookTarget, 30.0F, 30.0F);
@@ -230,7 +381,19 @@ public class AgentEntity extends PathfinderMob {
                 return false;
             }
         }
-        return super.hurt(source, amount);
+        boolean hurt = super.hurt(source, amount);
+        if (hurt && !level().isClientSide) {
+            WorldEvents.hurt(this, source, amount);
+        }
+        return hurt;
+    }
+
+    @Override
+    public void take(Entity entity, int amount) {
+        super.take(entity, amount);
+        if (entity instanceof ItemEntity item && !level().isClientSide) {
+            WorldEvents.pickup(this, item, amount);
+        }
     }
 
     @Override
@@ -246,6 +409,7 @@ public class AgentEntity extends PathfinderMob {
     @Override
     public void die(DamageSource source) {
         super.die(source);
+        finishNavigation(NavOutcome.DIED);
         if (!level().isClientSide) {
             Player owner = getOwner();
             if (owner != null) {
@@ -255,6 +419,12 @@ public class AgentEntity extends PathfinderMob {
         }
     }
 
+    @Override
+    public void remove(RemovalReason reason) {
+        super.remove(reason);
+        finishNavigation(NavOutcome.REMOVED);
+    }
+
     // ========== Persistence ==========
 
     @Override
@@ -288,11 +458,19 @@ public class AgentEntity extends PathfinderMob {
     // ========== Accessors ==========
 
     public String getAgentName() { return entityData.get(AGENT_NAME); }
-    public void setAgentName(String name) { entityData.set(AGENT_NAME, name); }
+    public void setAgentName(String name) {
+        String oldName = getAgentName();
+        entityData.set(AGENT_NAME, name);
+        if (!level().isClientSide) AgentIndex.get().renamed(this, oldName);
+    }
 
     @Nullable
     public UUID getOwnerUUID() { return entityData.get(OWNER_UUID).orElse(null); }
-    public void setOwnerUUID(@Nullable UUID uuid) { entityData.set(OWNER_UUID, Optional.ofNullable(uuid)); }
+    public void setOwnerUUID(@Nullable UUID uuid) {
+        UUID oldOwner = getOwnerUUID();
+        entityData.set(OWNER_UUID, Optional.ofNullable(uuid));
+        if (!level().isClientSide) AgentIndex.get().ownerChanged(this, oldOwner);
+    }
 
     public String getMmdModel() { return entityData.get(MMD_MODEL); }
     public void setMmdModel(String model) { entityData.set(MMD_MODEL, model != null ? model : ""); }
@@ -0,0 +1,105 @@
+package com.mineavatar.entity;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The agents currently in a server level, by name and by owner, so lookups do not scan every
+ * entity of every dimension.
+ *
+ * Maintained on the server thread: agents are added when they join a level and removed when
+ * they leave it (death, dismissal, chunk unload, dimension change), and re-keyed when their name
+ * or owner changes. Reads are safe from any thread.
+ */
+public class AgentIndex {
+
+    private static final AgentIndex INSTANCE = new AgentIndex();
+
+    private final Set<AgentEntity> agents = ConcurrentHashMap.newKeySet();
+    private final Map<String, AgentEntity> byName = new ConcurrentHashMap<>();
+    private final Map<UUID, Set<AgentEntity>> byOwner = new ConcurrentHashMap<>();
+
+    public static AgentIndex get() {
+        return INSTANCE;
+    }
+
+    public void add(AgentEntity agent) {
+        agents.add(agent);
+        byName.putIfAbsent(agent.getAgentName(), agent);
+        UUID owner = agent.getOwnerUUID();
+        if (owner != null) addOwned(owner, agent);
+    }
+
+    public void remove(AgentEntity agent) {
+        if (!agents.remove(agent)) return;
+        unmapName(agent.getAgentName(), agent);
+        UUID owner = agent.getOwnerUUID();
+        if (owner != null) removeOwned(owner, agent);
+    }
+
+    /** Re-key an indexed agent after its name changed. */
+    void renamed(AgentEntity agent, String oldName) {
+        if (!agents.contains(agent)) return;
+        unmapName(oldName, agent);
+        byName.putIfAbsent(agent.getAgentName(), agent);
+    }
+
+    /** Drop the name entry of {@code agent}, handing it to another agent of the same name if any. */
+    private void unmapName(String name, AgentEntity agent) {
+        if (!byName.remove(name, agent)) return;
+        for (AgentEntity other : agents) {
+            if (other != agent && other.getAgentName().equals(name)) {
+                byName.putIfAbsent(name, other);
+                return;
+            }
+        }
+    }
+
+    /** Re-key an indexed agent after its owner changed. */
+    void ownerChanged(AgentEntity agent, @Nullable UUID oldOwner) {
+        if (!agents.contains(agent)) return;
+        if (oldOwner != null) removeOwned(oldOwner, agent);
+        UUID owner = agent.getOwnerUUID();
+        if (owner != null) addOwned(owner, agent);
+    }
+
+    private void addOwned(UUID owner, AgentEntity agent) {
+        byOwner.computeIfAbsent(owner, o -> ConcurrentHashMap.newKeySet()).add(agent);
+    }
+
+    private void removeOwned(UUID owner, AgentEntity agent) {
+        byOwner.computeIfPresent(owner, (o, owned) -> {
+            owned.remove(agent);
+            return owned.isEmpty() ? null : owned;
+        });
+    }
+
+    @Nullable
+    public AgentEntity byName(String name) {
+        return byName.get(name);
+    }
+
+    /** Agents owned by the given player, possibly empty. */
+    public List<AgentEntity> byOwner(UUID owner) {
+        Set<AgentEntity> owned = byOwner.get(owner);
+        return owned != null ? List.copyOf(owned) : List.of();
+    }
+
+    public List<AgentEntity> all() {
+        return new ArrayList<>(agents);
+    }
+
+    /**
+     * Forget every agent (server shutdown).
+     */
+    public void clear() {
+        agents.clear();
+        byName.clear();
+        byOwner.clear();
+    }
+}
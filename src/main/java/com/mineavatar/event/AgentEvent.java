@@ -0,0 +1,12 @@
+package com.mineavatar.event;
+
+import com.google.gson.JsonObject;
+
+import javax.annotation.Nullable;
+
+/**
+ * Something that happened to an agent during a server tick, e.g. {@code nav.arrived}.
+ * {@code data} is the notification payload without the agent and tick fields.
+ */
+public record AgentEvent(String type, @Nullable String agent, JsonObject data) {
+}
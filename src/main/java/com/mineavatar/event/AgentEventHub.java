@@ -0,0 +1,77 @@
+package com.mineavatar.event;
+
+import com.google.gson.JsonObject;
+import com.mineavatar.MineAvatar;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Collects agent events raised during a server tick and hands them to listeners in one go
+ * at the end of the tick, so a connection gets at most one notification frame per tick.
+ *
+ * {@link #publish} and {@link #flush} run on the server thread only; listeners may be
+ * added and removed from any thread.
+ */
+public class AgentEventHub {
+
+    private static final AgentEventHub INSTANCE = new AgentEventHub();
+
+    private final List<AgentEventListener> listeners = new CopyOnWriteArrayList<>();
+    /** Events of the current tick. Server thread only. */
+    private final List<AgentEvent> pending = new ArrayList<>();
+
+    public static AgentEventHub get() {
+        return INSTANCE;
+    }
+
+    public void addListener(AgentEventListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(AgentEventListener listener) {
+        listeners.remove(listener);
+    }
+
+    public boolean hasListeners() {
+        return !listeners.isEmpty();
+    }
+
+    /**
+     * Queue an event for the end of this tick. Dropped right away if nobody listens.
+     */
+    public void publish(String type, @Nullable String agent, JsonObject data) {
+        if (listeners.isEmpty()) return;
+        pending.add(new AgentEvent(type, agent, data));
+    }
+
+    /**
+     * Deliver this tick's events. Called once per server tick, after entities have ticked.
+     * Listeners are called even in a tick without events, so they can retry buffered output.
+     */
+    public void flush(long tick) {
+        if (listeners.isEmpty()) {
+            pending.clear();
+            return;
+        }
+        List<AgentEvent> events = pending.isEmpty() ? List.of() : List.copyOf(pending);
+        pending.clear();
+        for (AgentEventListener listener : listeners) {
+            try {
+                listener.onEvents(tick, events);
+            } catch (Exception e) {
+                MineAvatar.LOGGER.error("[Events] Listener failed", e);
+            }
+        }
+    }
+
+    /**
+     * Drop undelivered events and listeners (server shutdown).
+     */
+    public void clear() {
+        pending.clear();
+        listeners.clear();
+    }
+}
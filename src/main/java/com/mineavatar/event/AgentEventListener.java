@@ -0,0 +1,13 @@
+package com.mineavatar.event;
+
+import java.util.List;
+
+/**
+ * Receives the events of one server tick, on the server thread, in publish order.
+ * Called every tick while registered, with an empty list in ticks without events.
+ */
+@FunctionalInterface
+public interface AgentEventListener {
+
+    void onEvents(long tick, List<AgentEvent> events);
+}
@@ -0,0 +1,60 @@
+package com.mineavatar.event;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A bounded FIFO of events for one connection. When full, the oldest event is overwritten and
+ * counted as dropped, so a slow or detached client costs fixed memory and learns how much it
+ * missed. Synchronized: filled on the server thread, reset from I/O threads.
+ */
+public class EventRingBuffer {
+
+    private final AgentEvent[] events;
+    private int head;
+    private int size;
+    private long dropped;
+
+    public EventRingBuffer(int capacity) {
+        this.events = new AgentEvent[capacity];
+    }
+
+    public synchronized void add(AgentEvent event) {
+        if (size == events.length) {
+            events[head] = event;
+            head = (head + 1) % events.length;
+            dropped++;
+        } else {
+            events[(head + size) % events.length] = event;
+            size++;
+        }
+    }
+
+    public synchronized boolean isEmpty() {
+        return size == 0;
+    }
+
+    /** Buffered events, oldest first, and how many were dropped before them. */
+    public record Batch(List<AgentEvent> events, long dropped) {}
+
+    /**
+     * Remove and return all buffered events and reset the drop counter.
+     */
+    public synchronized Batch drain() {
+        List<AgentEvent> drained = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            int index = (head + i) % events.length;
+            drained.add(events[index]);
+            events[index] = null;
+        }
+        Batch batch = new Batch(drained, dropped);
+        head = 0;
+        size = 0;
+        dropped = 0;
+        return batch;
+    }
+
+    public synchronized void clear() {
+        drain();
+    }
+}
@@ -0,0 +1,121 @@
+package com.mineavatar.event;
+
+import com.google.gson.JsonObject;
+import com.mineavatar.MineAvatarConfig;
+import com.mineavatar.entity.AgentEntity;
+import com.mineavatar.entity.AgentIndex;
+import com.mineavatar.perception.AgentSnapshot;
+import com.mineavatar.perception.PerceptionSnapshots;
+import net.minecraft.core.registries.BuiltInRegistries;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.server.level.ServerPlayer;
+import net.minecraft.world.damagesource.DamageSource;
+import net.minecraft.world.entity.Entity;
+import net.minecraft.world.entity.LivingEntity;
+import net.minecraft.world.entity.item.ItemEntity;
+import net.minecraft.world.item.ItemStack;
+
+import java.util.Set;
+
+/**
+ * Publishes the {@code world.*} events on {@link AgentEventHub}: things that happen to or near
+ * an agent. Each event names the agent it concerns; an event near several agents (a death, chat)
+ * is published once per agent within {@code events.worldEventRadius}, using the positions of the
+ * latest {@link PerceptionSnapshots} frame. Server thread only.
+ */
+public final class WorldEvents {
+
+    public static final String PREFIX = "world.";
+    public static final String HURT = "world.hurt";
+    public static final String DEATH = "world.death";
+    public static final String CHAT = "world.chat";
+    public static final String PICKUP = "world.pickup";
+    public static final String OWNER_JOIN = "world.ownerJoin";
+    public static final String OWNER_LEAVE = "world.ownerLeave";
+    public static final Set<String> TYPES = Set.of(HURT, DEATH, CHAT, PICKUP, OWNER_JOIN, OWNER_LEAVE);
+
+    private WorldEvents() {}
+
+    /** The agent took damage. */
+    public static void hurt(AgentEntity agent, DamageSource source, float amount) {
+        if (!AgentEventHub.get().hasListeners()) return;
+        JsonObject data = new JsonObject();
+        data.addProperty("amount", amount);
+        data.addProperty("health", agent.getHealth());
+        data.addProperty("damageType", source.getMsgId());
+        Entity attacker = source.getEntity();
+        if (attacker != null) data.add("attacker", describe(attacker));
+        AgentEventHub.get().publish(HURT, agent.getAgentName(), data);
+    }
+
+    /** A living entity died: reported to every agent nearby, including the dying agent itself. */
+    public static void death(LivingEntity entity, DamageSource source) {
+        if (!AgentEventHub.get().hasListeners() || !(entity.level() instanceof ServerLevel level)) return;
+        double radius = MineAvatarConfig.WORLD_EVENT_RADIUS.get();
+        for (AgentSnapshot agent : PerceptionSnapshots.get().current().agents()) {
+            boolean self = agent.uuid().equals(entity.getStringUUID());
+            double distance = distance(agent, level, entity.getX(), entity.getY(), entity.getZ());
+            if (!self && distance > radius) continue;
+            JsonObject data = new JsonObject();
+            data.add("entity", describe(entity));
+            data.addProperty("self", self);
+            data.addProperty("damageType", source.getMsgId());
+            Entity killer = source.getEntity();
+            if (killer != null) data.add("killer", describe(killer));
+            data.addProperty("distance", Math.round(distance * 10.0) / 10.0);
+            AgentEventHub.get().publish(DEATH, agent.name(), data);
+        }
+    }
+
+    /** A player chatted: reported to every agent within earshot. */
+    public static void chat(ServerPlayer player, String message) {
+        if (!AgentEventHub.get().hasListeners()) return;
+        double radius = MineAvatarConfig.WORLD_EVENT_RADIUS.get();
+        for (AgentSnapshot agent : PerceptionSnapshots.get().current().agents()) {
+            double distance = distance(agent, player.serverLevel(), player.getX(), player.getY(), player.getZ());
+            if (distance > radius) continue;
+            JsonObject data = new JsonObject();
+            data.add("player", describe(player));
+            data.addProperty("message", message);
+            data.addProperty("distance", Math.round(distance * 10.0) / 10.0);
+            AgentEventHub.get().publish(CHAT, agent.name(), data);
+        }
+    }
+
+    /** The agent picked up {@code count} items of an item entity. */
+    public static void pickup(AgentEntity agent, ItemEntity item, int count) {
+        if (!AgentEventHub.get().hasListeners()) return;
+        ItemStack stack = item.getItem();
+        JsonObject data = new JsonObject();
+        data.addProperty("item", BuiltInRegistries.ITEM.getKey(stack.getItem()).toString());
+        data.addProperty("count", count);
+        AgentEventHub.get().publish(PICKUP, agent.getAgentName(), data);
+    }
+
+    /** A player logged in or out: reported to each of their agents. */
+    public static void ownerConnection(ServerPlayer player, boolean joined) {
+        if (!AgentEventHub.get().hasListeners()) return;
+        for (AgentEntity agent : AgentIndex.get().byOwner(player.getUUID())) {
+            JsonObject data = new JsonObject();
+            data.add("player", describe(player));
+            AgentEventHub.get().publish(joined ? OWNER_JOIN : OWNER_LEAVE, agent.getAgentName(), data);
+        }
+    }
+
+    /** Distance from an agent snapshot to a point, or infinity in another dimension. */
+    private static double distance(AgentSnapshot agent, ServerLevel level, double x, double y, double z) {
+        if (!agent.dimension().equals(level.dimension())) return Double.POSITIVE_INFINITY;
+        double dx = agent.x() - x;
+        double dy = agent.y() - y;
+        double dz = agent.z() - z;
+        return Math.sqrt(dx * dx + dy * dy + dz * dz);
+    }
+
+    private static JsonObject describe(Entity entity) {
+        JsonObject json = new JsonObject();
+        json.addProperty("uuid", entity.getStringUUID());
+        json.addProperty("type", BuiltInRegistries.ENTITY_TYPE.getKey(entity.getType()).toString());
+        json.addProperty("name", entity.getName().getString());
+        return json;
+    }
+}
@@ -1,89 +1,205 @@
 package com.mineavatar.network;
 
 import com.mineavatar.MineAvatar;
+import com.mineavatar.MineAvatarConfig;
 import com.mineavatar.action.ActionRegistry;
+import com.mineavatar.action.ActionScheduler;
 import io.netty.bootstrap.ServerBootstrap;
 import io.netty.channel.*;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollServerDomainSocketChannel;
+import io.netty.channel.epoll.EpollServerSocketChannel;
 import io.netty.channel.nio.NioEventLoopGroup;
-import io.netty.channel.socket.SocketChannel;
 import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.unix.DomainSocketAddress;
 import io.netty.handler.codec.LengthFieldBasedFrameDecoder;
 import io.netty.handler.codec.LengthFieldPrepender;
-import io.netty.handler.codec.string.StringDecoder;
-import io.netty.handler.codec.string.StringEncoder;
 import net.minecraft.server.MinecraftServer;
 
-import java.nio.charset.StandardCharsets;
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
- * TCP server using only Minecraft's bundled Netty core modules.
- * Protocol: 4-byte big-endian length prefix + UTF-8 JSON payload.
+ * TCP server using only Minecraft's bundled Netty modules.
+ * Protocol: 4-byte big-endian length prefix + UTF-8 JSON payload, or the compact
+ * binary encoding of {@link BinaryRpcCodec} if the client negotiates it during auth.
+ * Large payloads can additionally be compressed ({@link FrameCompressionCodec}).
  *
- * No external dependencies — all classes come from netty-codec and netty-transport
- * which are guaranteed to be in Minecraft's classpath.
+ * No external dependencies — all classes come from netty-codec, netty-transport and
+ * the native epoll transport, which are guaranteed to be in Minecraft's classpath.
+ * Epoll is used when available (see {@code websocket.transport}); with epoll, the same
+ * protocol can additionally be served on a Unix domain socket for co-located controllers.
  */
 public class AgentTcpServer {
 
     private EventLoopGroup bossGroup;
     private EventLoopGroup workerGroup;
-    private Channel serverChannel;
+    private final List<Channel> serverChannels = new ArrayList<>();
+    @Nullable
+    private String unixSocketPath;
     private final int port;
 
     public AgentTcpServer(int port) {
         this.port = port;
     }
 
-    public void start(MinecraftServer server, ActionRegistry registry) {
-        bossGroup = new NioEventLoopGroup(1);
-        workerGroup = new NioEventLoopGroup(2);
+    public void start(MinecraftServer server, ActionRegistry registry, ActionScheduler scheduler) {
+        boolean epoll = useEpoll();
+        int workers = MineAvatarConfig.WS_WORKER_THREADS.get();
+        bossGroup = epoll ? new EpollEventLoopGroup(1) : new NioEventLoopGroup(1);
+        workerGroup = epoll ? new EpollEventLoopGroup(workers) : new NioEventLoopGroup(workers);
+
+        ChannelInitializer<Channel> initializer = new ChannelInitializer<>() {
+            @Override
+            protected void initChannel(Channel ch) {
+                ch.pipeline()
+                        // Inbound: read 4-byte length prefix, then extract frame
+                        .addLast(new LengthFieldBasedFrameDecoder(
+                                MineAvatarConfig.WS_MAX_FRAME_BYTES.get() + 1,  // max frame size (+1 compression flag)
+                                0,        // length field offset
+                                4,        // length field size (bytes)
+                                0,        // length adjustment
+                                4         // bytes to strip (remove the length prefix itself)
+                        ))
+                        // Outbound: prepend 4-byte length prefix
+                        .addLast(new LengthFieldPrepender(4))
+                        // Per-frame compression flag, once negotiated during auth
+                        .addLast(new FrameCompressionCodec())
+                        // Payload <-> RpcFrame / RpcResponse (JSON by default, binary after auth)
+                        .addLast(new RpcFrameCodec(registry))
+                        // Application logic
+                        .addLast(new JsonRpcHandler(server, registry, scheduler));
+            }
+        };
 
         try {
             ServerBootstrap bootstrap = new ServerBootstrap();
             bootstrap.group(bossGroup, workerGroup)
-                    .channel(NioServerSocketChannel.class)
-                    .childHandler(new ChannelInitializer<SocketChannel>() {
-                        @Override
-                        protected void initChannel(SocketChannel ch) {
-                            ch.pipeline()
-                                    // Inbound: read 4-byte length prefix, then extract frame
-                                    .addLast(new LengthFieldBasedFrameDecoder(
-                                            1048576,  // max frame size: 1 MB
-                                            0,        // length field offset
-                                            4,        // length field size (bytes)
-                                            0,        // length adjustment
-                                            4         // bytes to strip (remove the length prefix itself)
-                                    ))
-                                    .addLast(new StringDecoder(StandardCharsets.UTF_8))
-                                    // Outbound: prepend 4-byte length prefix
-                                    .addLast(new LengthFieldPrepender(4))
-                                    .addLast(new StringEncoder(StandardCharsets.UTF_8))
-                                    // Application logic
-                                    .addLast(new JsonRpcHandler(server, registry));
-                        }
-                    })
-                    .option(ChannelOption.SO_BACKLOG, 8)
-                    .childOption(ChannelOption.SO_KEEPALIVE, true);
-
-            serverChannel = bootstrap.bind(port).sync().channel();
-            MineAvatar.LOGGER.info("[TCP] Agent TCP server started on port {}", port);
+                    .channel(epoll ? EpollServerSocketChannel.class : NioServerSocketChannel.class)
+                    .childHandler(initializer)
+                    .option(ChannelOption.SO_BACKLOG, MineAvatarConfig.WS_BACKLOG.get())
+                    .childOption(ChannelOption.SO_KEEPALIVE, true)
+                    .childOption(ChannelOption.TCP_NODELAY, MineAvatarConfig.WS_TCP_NODELAY.get())
+                    .childOption(ChannelOption.WRITE_BUFFER_WATER_MARK, writeBufferWaterMark());
+
+            serverChannels.add(bootstrap.bind(port).sync().channel());
+            MineAvatar.LOGGER.info("[TCP] Agent TCP server started on port {} ({}, {} workers)",
+                    port, epoll ? "epoll" : "nio", workers);
         } catch (InterruptedException e) {
             MineAvatar.LOGGER.error("[TCP] Failed to start TCP server on port {}", port, e);
             Thread.currentThread().interrupt();
             stop();
+            return;
         } catch (Exception e) {
             MineAvatar.LOGGER.error("[TCP] Failed to start TCP server on port {}", port, e);
             stop();
+            return;
+        }
+
+        String socketPath = MineAvatarConfig.WS_UNIX_SOCKET_PATH.get();
+        if (!socketPath.isEmpty()) {
+            if (epoll) {
+                bindUnixSocket(socketPath, initializer);
+            } else {
+                MineAvatar.LOGGER.warn("[TCP] Unix domain socket '{}' requires the epoll transport; skipped",
+                        socketPath);
+            }
+        }
+    }
+
+    /**
+     * Additionally listen on a Unix domain socket. A failure here is logged and leaves the TCP
+     * listener running.
+     */
+    private void bindUnixSocket(String path, ChannelInitializer<Channel> initializer) {
+        // A stale socket file from an unclean shutdown would make bind fail; anything else at
+        // that path is not ours to delete.
+        if (!deleteSocketFile(path)) return;
+
+        ServerBootstrap bootstrap = new ServerBootstrap();
+        bootstrap.group(bossGroup, workerGroup)
+                .channel(EpollServerDomainSocketChannel.class)
+                .childHandler(initializer)
+                .option(ChannelOption.SO_BACKLOG, MineAvatarConfig.WS_BACKLOG.get())
+                .childOption(ChannelOption.WRITE_BUFFER_WATER_MARK, writeBufferWaterMark());
+
+        try {
+            serverChannels.add(bootstrap.bind(new DomainSocketAddress(path)).sync().channel());
+        } catch (InterruptedException e) {
+            MineAvatar.LOGGER.error("[TCP] Failed to listen on unix socket {}", path, e);
+            Thread.currentThread().interrupt();
+            return;
+        } catch (Exception e) {
+            MineAvatar.LOGGER.error("[TCP] Failed to listen on unix socket {}", path, e);
+            return;
+        }
+        unixSocketPath = path;
+        MineAvatar.LOGGER.info("[TCP] Agent server also listening on unix socket {}", path);
+    }
+
+    /**
+     * Remove the socket file at {@code path} if there is one.
+     * @return false if something other than a socket is there, or it could not be removed
+     */
+    private static boolean deleteSocketFile(String path) {
+        Path file = Path.of(path);
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class,
+                    LinkOption.NOFOLLOW_LINKS);
+            if (!attributes.isOther()) {
+                MineAvatar.LOGGER.error("[TCP] {} exists and is not a socket; not listening on it", path);
+                return false;
+            }
+            Files.delete(file);
+        } catch (NoSuchFileException e) {
+            // Nothing to remove
+        } catch (IOException e) {
+            MineAvatar.LOGGER.error("[TCP] Could not remove stale socket file {}", path, e);
+            return false;
         }
+        return true;
+    }
+
+    private static WriteBufferWaterMark writeBufferWaterMark() {
+        int high = MineAvatarConfig.WS_WRITE_BUFFER_HIGH.get();
+        int low = Math.min(MineAvatarConfig.WS_WRITE_BUFFER_LOW.get(), high);
+        return new WriteBufferWaterMark(low, high);
+    }
+
+    private static boolean useEpoll() {
+        return switch (MineAvatarConfig.WS_TRANSPORT.get()) {
+            case NIO -> false;
+            case AUTO -> Epoll.isAvailable();
+            case EPOLL -> {
+                if (!Epoll.isAvailable()) {
+                    MineAvatar.LOGGER.warn("[TCP] Epoll transport requested but unavailable, falling back to NIO",
+                            Epoll.unavailabilityCause());
+                }
+                yield Epoll.isAvailable();
+            }
+        };
     }
 
     public void stop() {
-        if (serverChannel != null) {
+        for (Channel channel : serverChannels) {
             try {
-                serverChannel.close().sync();
+                channel.close().sync();
             } catch (InterruptedException e) {
                 Thread.currentThread().interrupt();
             }
-            serverChannel = null;
+        }
+        serverChannels.clear();
+        if (unixSocketPath != null) {
+            deleteSocketFile(unixSocketPath);
+            unixSocketPath = null;
         }
         if (bossGroup != null) {
             bossGroup.shutdownGracefully();
@@ -0,0 +1,376 @@
+package com.mineavatar.network;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+import com.mineavatar.action.ActionRegistry;
+import com.mineavatar.action.ActionResult;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+
+import javax.annotation.Nullable;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact binary codec, selected with {@code "protocol": "binary"} in {@code auth}.
+ *
+ * Frame payloads (inside the usual 4-byte length prefix):
+ * <pre>
+ *   request        := 0x01 id methodId params
+ *                   | 0x03 id methodId params varint(timeoutMs)
+ *   batch          := 0x02 varint(count) request*
+ *   response       := 0x10 id value
+ *   error          := 0x11 id zigzag(code) string
+ *   batch response := 0x12 varint(count) (response | error | notification)*
+ *   notification   := 0x20 string(method) params
+ *
+ *   id             := value (NULL, INT or STRING)
+ *   methodId       := varint — ID from the auth "methods" table; 0 means a STRING name follows
+ *   params         := value (OBJECT or NULL)
+ *
+ *   value := 0x00 NULL | 0x01 FALSE | 0x02 TRUE
+ *          | 0x03 INT    zigzag varint64
+ *          | 0x04 DOUBLE 8 bytes, big-endian IEEE 754
+ *          | 0x05 STRING varint(length) UTF-8 bytes
+ *          | 0x06 ARRAY  varint(count) value*
+ *          | 0x07 OBJECT varint(count) (string value)*   — keys are bare varint-length UTF-8
+ *          | 0x08 BYTES  varint(length) raw bytes
+ * </pre>
+ * Request IDs are echoed back as strings, same as the JSON codec. Byte attachments of a result
+ * ({@link ActionResult#withBytes}) are sent as BYTES; a BYTES value in a request decodes to
+ * its base64 string, which is what the JSON codec would have carried.
+ */
+public final class BinaryRpcCodec implements RpcCodec {
+
+    static final int MSG_REQUEST = 0x01;
+    static final int MSG_BATCH = 0x02;
+    static final int MSG_TIMED_REQUEST = 0x03;
+    static final int MSG_RESPONSE = 0x10;
+    static final int MSG_ERROR = 0x11;
+    static final int MSG_BATCH_RESPONSE = 0x12;
+    static final int MSG_NOTIFICATION = 0x20;
+
+    static final int T_NULL = 0x00;
+    static final int T_FALSE = 0x01;
+    static final int T_TRUE = 0x02;
+    static final int T_INT = 0x03;
+    static final int T_DOUBLE = 0x04;
+    static final int T_STRING = 0x05;
+    static final int T_ARRAY = 0x06;
+    static final int T_OBJECT = 0x07;
+    static final int T_BYTES = 0x08;
+
+    private static final int MAX_DEPTH = 64;
+
+    private final ActionRegistry registry;
+
+    public BinaryRpcCodec(ActionRegistry registry) {
+        this.registry = registry;
+    }
+
+    // ── Decoding ────────────────────────────────────────────────────
+
+    @Override
+    public RpcFrame decode(ByteBuf frame) {
+        try {
+            int type = frame.readUnsignedByte();
+            switch (type) {
+                case MSG_REQUEST, MSG_TIMED_REQUEST -> {
+                    return RpcFrame.single(readRequest(frame, type == MSG_TIMED_REQUEST));
+                }
+                case MSG_BATCH -> {
+                    int count = readCount(frame);
+                    List<RpcRequest> requests = new ArrayList<>(count);
+                    for (int i = 0; i < count; i++) {
+                        int entryType = frame.readUnsignedByte();
+                        if (entryType != MSG_REQUEST && entryType != MSG_TIMED_REQUEST) {
+                            return RpcFrame.parseError("Batch entry " + i + " is not a request (type " + entryType + ")");
+                        }
+                        requests.add(readRequest(frame, entryType == MSG_TIMED_REQUEST));
+                    }
+                    return RpcFrame.batch(requests);
+                }
+                default -> {
+                    return RpcFrame.parseError("Unknown message type " + type);
+                }
+            }
+        } catch (IndexOutOfBoundsException e) {
+            return RpcFrame.parseError("Truncated binary frame");
+        } catch (IllegalArgumentException e) {
+            return RpcFrame.parseError(e.getMessage());
+        } catch (IllegalStateException | UnsupportedOperationException e) {
+            return RpcFrame.parseError("Request 'id' and method name must be primitives");
+        }
+    }
+
+    private RpcRequest readRequest(ByteBuf in, boolean timed) {
+        RpcRequest request = readUntimedRequest(in);
+        return timed ? request.withDeadline(RpcRequest.deadlineAfter(readVarLong(in))) : request;
+    }
+
+    private RpcRequest readUntimedRequest(ByteBuf in) {
+        JsonElement idElem = readValue(in, 0);
+        String id = idElem.isJsonNull() ? null : idElem.getAsString();
+
+        int methodId = readVarInt(in);
+        String method;
+        if (methodId == 0) {
+            method = readValue(in, 0).getAsString();
+        } else {
+            method = registry.methodName(methodId);
+            if (method == null) {
+                readValue(in, 0); // skip params
+                return RpcRequest.invalid(id, "Unknown method ID " + methodId);
+            }
+        }
+
+        JsonElement params = readValue(in, 0);
+        if (params.isJsonNull()) {
+            return RpcRequest.of(id, method, new JsonObject());
+        }
+        if (!params.isJsonObject()) {
+            return RpcRequest.invalid(id, "'params' must be an object");
+        }
+        return RpcRequest.of(id, method, params.getAsJsonObject());
+    }
+
+    private static JsonElement readValue(ByteBuf in, int depth) {
+        if (depth > MAX_DEPTH) {
+            throw new IllegalArgumentException("Value nesting exceeds " + MAX_DEPTH);
+        }
+        int tag = in.readUnsignedByte();
+        switch (tag) {
+            case T_NULL -> { return JsonNull.INSTANCE; }
+            case T_FALSE -> { return new JsonPrimitive(false); }
+            case T_TRUE -> { return new JsonPrimitive(true); }
+            case T_INT -> { return new JsonPrimitive(zigzagDecode(readVarLong(in))); }
+            case T_DOUBLE -> { return new JsonPrimitive(in.readDouble()); }
+            case T_STRING -> { return new JsonPrimitive(readString(in)); }
+            case T_ARRAY -> {
+                int count = readCount(in);
+                JsonArray array = new JsonArray(count);
+                for (int i = 0; i < count; i++) {
+                    array.add(readValue(in, depth + 1));
+                }
+                return array;
+            }
+            case T_OBJECT -> {
+                int count = readCount(in);
+                JsonObject object = new JsonObject();
+                for (int i = 0; i < count; i++) {
+                    String key = readString(in);
+                    object.add(key, readValue(in, depth + 1));
+                }
+                return object;
+            }
+            case T_BYTES -> {
+                byte[] bytes = new byte[readCount(in)];
+                in.readBytes(bytes);
+                return new JsonPrimitive(Base64.getEncoder().encodeToString(bytes));
+            }
+            default -> throw new IllegalArgumentException("Unknown value tag " + tag);
+        }
+    }
+
+    private static String readString(ByteBuf in) {
+        int length = readCount(in);
+        return in.readCharSequence(length, StandardCharsets.UTF_8).toString();
+    }
+
+    /** A length or element count; bounded by the remaining bytes so garbage cannot force huge allocations. */
+    private static int readCount(ByteBuf in) {
+        int count = readVarInt(in);
+        if (count < 0 || count > in.readableBytes()) {
+            throw new IllegalArgumentException("Length " + count + " exceeds remaining frame size");
+        }
+        return count;
+    }
+
+    static int readVarInt(ByteBuf in) {
+        int result = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            byte b = in.readByte();
+            result |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return result;
+        }
+        throw new IllegalArgumentException("VarInt too long");
+    }
+
+    static long readVarLong(ByteBuf in) {
+        long result = 0;
+        for (int shift = 0; shift < 70; shift += 7) {
+            byte b = in.readByte();
+            result |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return result;
+        }
+        throw new IllegalArgumentException("VarLong too long");
+    }
+
+    private static long zigzagDecode(long n) {
+        return (n >>> 1) ^ -(n & 1);
+    }
+
+    // ── Encoding ────────────────────────────────────────────────────
+
+    @Override
+    public void encode(RpcMessage message, ByteBuf out) {
+        writeMessage(message, out);
+    }
+
+    @Override
+    public void encodeBatch(List<? extends RpcMessage> messages, ByteBuf out) {
+        out.writeByte(MSG_BATCH_RESPONSE);
+        writeVarInt(out, messages.size());
+        for (RpcMessage message : messages) {
+            writeMessage(message, out);
+        }
+    }
+
+    private static void writeMessage(RpcMessage message, ByteBuf out) {
+        switch (message) {
+            case RpcResponse response -> writeResponse(response, out);
+            case RpcNotification notification -> {
+                out.writeByte(MSG_NOTIFICATION);
+                writeString(notification.method(), out);
+                writeValue(notification.params(), out);
+            }
+        }
+    }
+
+    private static void writeResponse(RpcResponse response, ByteBuf out) {
+        if (response.isError()) {
+            out.writeByte(MSG_ERROR);
+            writeId(response.getId(), out);
+            writeVarLong(out, zigzagEncode(response.getErrorCode()));
+            writeString(response.getErrorMessage(), out);
+        } else {
+            out.writeByte(MSG_RESPONSE);
+            writeId(response.getId(), out);
+            if (response.getActionResult() != null) {
+                writeActionResult(response.getActionResult(), out);
+            } else {
+                writeValue(response.resultToJson(), out);
+            }
+        }
+    }
+
+    /** Same shape as {@link ActionResult#toJson()}, with byte attachments as BYTES values. */
+    private static void writeActionResult(ActionResult result, ByteBuf out) {
+        if (!result.isSuccess() || result.getBytes().isEmpty()) {
+            writeValue(result.toJson(), out);
+            return;
+        }
+        out.writeByte(T_OBJECT);
+        writeVarInt(out, 2);
+        writeString("success", out);
+        out.writeByte(T_TRUE);
+        writeString("data", out);
+        JsonObject data = result.getData();
+        out.writeByte(T_OBJECT);
+        writeVarInt(out, data.size() + result.getBytes().size());
+        for (Map.Entry<String, JsonElement> entry : data.entrySet()) {
+            writeString(entry.getKey(), out);
+            writeValue(entry.getValue(), out);
+        }
+        for (Map.Entry<String, byte[]> entry : result.getBytes().entrySet()) {
+            writeString(entry.getKey(), out);
+            out.writeByte(T_BYTES);
+            writeVarInt(out, entry.getValue().length);
+            out.writeBytes(entry.getValue());
+        }
+    }
+
+    private static void writeId(@Nullable String id, ByteBuf out) {
+        if (id == null) {
+            out.writeByte(T_NULL);
+        } else {
+            out.writeByte(T_STRING);
+            writeString(id, out);
+        }
+    }
+
+    static void writeValue(JsonElement value, ByteBuf out) {
+        if (value == null || value.isJsonNull()) {
+            out.writeByte(T_NULL);
+        } else if (value.isJsonObject()) {
+            JsonObject object = value.getAsJsonObject();
+            out.writeByte(T_OBJECT);
+            writeVarInt(out, object.size());
+            for (Map.Entry<String, JsonElement> entry : object.entrySet()) {
+                writeString(entry.getKey(), out);
+                writeValue(entry.getValue(), out);
+            }
+        } else if (value.isJsonArray()) {
+            JsonArray array = value.getAsJsonArray();
+            out.writeByte(T_ARRAY);
+            writeVarInt(out, array.size());
+            for (JsonElement element : array) {
+                writeValue(element, out);
+            }
+        } else {
+            JsonPrimitive primitive = value.getAsJsonPrimitive();
+            if (primitive.isBoolean()) {
+                out.writeByte(primitive.getAsBoolean() ? T_TRUE : T_FALSE);
+            } else if (primitive.isNumber()) {
+                writeNumber(primitive.getAsNumber(), out);
+            } else {
+                out.writeByte(T_STRING);
+                writeString(primitive.getAsString(), out);
+            }
+        }
+    }
+
+    private static void writeNumber(Number number, ByteBuf out) {
+        if (number instanceof Integer || number instanceof Long
+                || number instanceof Short || number instanceof Byte) {
+            out.writeByte(T_INT);
+            writeVarLong(out, zigzagEncode(number.longValue()));
+            return;
+        }
+        if (!(number instanceof Double || number instanceof Float)) {
+            // LazilyParsedNumber, BigInteger, BigDecimal: keep integers exact when they fit
+            try {
+                long exact = new BigDecimal(number.toString()).longValueExact();
+                out.writeByte(T_INT);
+                writeVarLong(out, zigzagEncode(exact));
+                return;
+            } catch (ArithmeticException | NumberFormatException ignored) {
+                // fall through to double
+            }
+        }
+        out.writeByte(T_DOUBLE);
+        out.writeDouble(number.doubleValue());
+    }
+
+    private static void writeString(String s, ByteBuf out) {
+        writeVarInt(out, ByteBufUtil.utf8Bytes(s));
+        out.writeCharSequence(s, StandardCharsets.UTF_8);
+    }
+
+    static void writeVarInt(ByteBuf out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    static void writeVarLong(ByteBuf out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static long zigzagEncode(long n) {
+        return (n << 1) ^ (n >> 63);
+    }
+}
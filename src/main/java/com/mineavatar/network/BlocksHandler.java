@@ -0,0 +1,170 @@
+package com.mineavatar.network;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.mineavatar.MineAvatarConfig;
+import com.mineavatar.perception.BlockChangeListener;
+import com.mineavatar.perception.BlockChangeTracker;
+import net.minecraft.commands.arguments.blocks.BlockStateParser;
+import net.minecraft.world.level.block.Block;
+
+import javax.annotation.Nullable;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * {@code blocks.subscribe} ({@code agents}, {@code radius}) forwards the block changes of
+ * {@link BlockChangeTracker} near those agents as one {@code blocks.changed} notification per
+ * tick. Changes are grouped by section and packed as {@code stateId << 12 | yzxIndex}; each
+ * notification carries the block state strings of the IDs this session has not seen yet.
+ * If a resume finds that messages were dropped while detached, a {@code blocks.resync}
+ * notification follows the buffered ones: the client's copy of the watched area and its state
+ * strings are stale, and later notifications repeat every state string again.
+ * {@code blocks.unsubscribe} stops them.
+ */
+final class BlocksHandler implements SessionHandler {
+
+    private static final String SUBSCRIBE_METHOD = "blocks.subscribe";
+    private static final String UNSUBSCRIBE_METHOD = "blocks.unsubscribe";
+    private static final String CHANGED_METHOD = "blocks.changed";
+    private static final String RESYNC_METHOD = "blocks.resync";
+    private static final int DEFAULT_RADIUS = 16;
+
+    private record Watch(Set<String> agents, int radius) {}
+
+    private final RpcSession session;
+    /** Agent filter and radius of blocks.subscribe; null when not subscribed. */
+    @Nullable
+    private volatile Watch watch;
+    private final BlockChangeListener listener = new BlockChangeListener() {
+        @Override
+        public Set<String> watchedAgents() {
+            Watch current = watch;
+            return current != null ? current.agents() : Set.of();
+        }
+
+        @Override
+        public int watchRadius() {
+            Watch current = watch;
+            return current != null ? current.radius() : 0;
+        }
+
+        @Override
+        public void onBlockChanges(long tick, List<BlockChangeTracker.SectionChanges> changes) {
+            forward(tick, changes);
+        }
+    };
+    /** Block state IDs whose state string was already sent. Guarded by itself. */
+    private final Set<Integer> sentStates = new HashSet<>();
+
+    BlocksHandler(RpcSession session) {
+        this.session = session;
+    }
+
+    @Override
+    public Map<String, Method> methods() {
+        return Map.of(SUBSCRIBE_METHOD, this::subscribe, UNSUBSCRIBE_METHOD, this::unsubscribe);
+    }
+
+    @Override
+    public void close() {
+        watch = null;
+        BlockChangeTracker.get().removeListener(listener);
+    }
+
+    /**
+     * {@code blocks.subscribe}: forward block changes within {@code radius} blocks (default 16,
+     * at most {@code perception.blockChangeMaxRadius}) of the listed agents (all agents if
+     * {@code agents} is absent or empty). A second call replaces the filter.
+     */
+    private RpcResponse subscribe(RpcRequest request) {
+        JsonObject params = request.params();
+        Set<String> agents = SessionHandler.agentNames(params);
+        if (agents == null) {
+            return RpcResponse.error(request.id(), -32602, "'agents' must be an array of agent names");
+        }
+        int maxRadius = MineAvatarConfig.BLOCK_CHANGE_MAX_RADIUS.get();
+        int radius = DEFAULT_RADIUS;
+        if (params.has("radius")) {
+            JsonElement value = params.get("radius");
+            radius = value.isJsonPrimitive() && value.getAsJsonPrimitive().isNumber() ? value.getAsInt() : 0;
+        }
+        if (radius < 1 || radius > maxRadius) {
+            return RpcResponse.error(request.id(), -32602, "'radius' must be between 1 and " + maxRadius);
+        }
+
+        watch = new Watch(Set.copyOf(agents), radius);
+        BlockChangeTracker.get().addListener(listener);
+        JsonObject data = new JsonObject();
+        data.addProperty("subscribed", true);
+        data.addProperty("agents", agents.isEmpty() ? "all" : String.join(",", agents));
+        data.addProperty("radius", radius);
+        return SessionHandler.reply(request, data);
+    }
+
+    private RpcResponse unsubscribe(RpcRequest request) {
+        boolean wasSubscribed = watch != null;
+        close();
+        JsonObject data = new JsonObject();
+        data.addProperty("unsubscribed", wasSubscribed);
+        return SessionHandler.reply(request, data);
+    }
+
+    /**
+     * Called on the server thread with one tick's changes near the watched agents. Unlike
+     * perception updates these are buffered while detached: a skipped change would leave the
+     * client's copy of the world wrong for good.
+     */
+    private void forward(long tick, List<BlockChangeTracker.SectionChanges> changes) {
+        if (watch == null) return;
+        synchronized (sentStates) {
+            session.send(changed(tick, changes));
+        }
+    }
+
+    private RpcNotification changed(long tick, List<BlockChangeTracker.SectionChanges> changes) {
+        JsonArray sections = new JsonArray();
+        JsonObject states = new JsonObject();
+        for (BlockChangeTracker.SectionChanges change : changes) {
+            JsonObject section = new JsonObject();
+            section.addProperty("dimension", change.dimension().location().toString());
+            section.addProperty("x", change.x());
+            section.addProperty("y", change.y());
+            section.addProperty("z", change.z());
+            JsonArray packed = new JsonArray();
+            for (long entry : change.packed()) {
+                packed.add(entry);
+                int stateId = (int) (entry >>> 12);
+                if (sentStates.add(stateId)) {
+                    states.addProperty(Integer.toString(stateId),
+                            BlockStateParser.serialize(Block.stateById(stateId)));
+                }
+            }
+            section.add("changes", packed);
+            sections.add(section);
+        }
+        JsonObject params = new JsonObject();
+        params.addProperty("tick", tick);
+        params.add("sections", sections);
+        params.add("states", states);
+        return new RpcNotification(CHANGED_METHOD, params);
+    }
+
+    /**
+     * Messages were dropped while detached, possibly block changes or the only copy of a state
+     * string: tell a block watcher to re-read the area, and send every state string again.
+     * Called after the buffered messages were flushed, so the resync follows them.
+     */
+    void resync(int dropped) {
+        if (watch == null) return;
+        synchronized (sentStates) {
+            sentStates.clear();
+            JsonObject params = new JsonObject();
+            params.addProperty("dropped", dropped);
+            session.send(new RpcNotification(RESYNC_METHOD, params));
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.mineavatar.network;
+
+import com.mineavatar.MineAvatarConfig;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.CorruptedFrameException;
+import io.netty.handler.codec.MessageToMessageCodec;
+import io.netty.handler.codec.TooLongFrameException;
+
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Optional per-frame compression, enabled with {@code "compression": "deflate"} in {@code auth}.
+ *
+ * Until enabled, payloads pass through untouched. Afterwards every frame payload in both
+ * directions starts with one flag byte:
+ * <pre>
+ *   0x00  the rest is the plain payload
+ *   0x01  the rest is the payload compressed with zlib (RFC 1950) deflate
+ * </pre>
+ * Outbound payloads below {@code websocket.compressionThreshold} — control replies, mostly —
+ * are sent plain, as are payloads that compression would not shrink. Inbound payloads may
+ * not inflate beyond {@code websocket.maxFrameBytes}.
+ *
+ * Sits between the length-field framing handlers and {@link RpcFrameCodec}; like the latter,
+ * only touched from the channel's event loop.
+ */
+public class FrameCompressionCodec extends MessageToMessageCodec<ByteBuf, ByteBuf> {
+
+    static final int FLAG_PLAIN = 0x00;
+    static final int FLAG_DEFLATE = 0x01;
+
+    private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    private final Inflater inflater = new Inflater();
+    private final byte[] chunk = new byte[8192];
+    private boolean enabled;
+
+    public void enable() {
+        enabled = true;
+    }
+
+    public boolean isEnabled() { return enabled; }
+
+    @Override
+    protected void decode(ChannelHandlerContext ctx, ByteBuf msg, List<Object> out) throws DataFormatException {
+        if (!enabled) {
+            out.add(msg.retain());
+            return;
+        }
+        int flag = msg.readUnsignedByte();
+        switch (flag) {
+            case FLAG_PLAIN -> out.add(msg.retain());
+            case FLAG_DEFLATE -> out.add(inflate(ctx, msg));
+            default -> throw new CorruptedFrameException("Unknown compression flag " + flag);
+        }
+    }
+
+    private ByteBuf inflate(ChannelHandlerContext ctx, ByteBuf msg) throws DataFormatException {
+        int maxBytes = MineAvatarConfig.WS_MAX_FRAME_BYTES.get();
+        ByteBuf inflated = ctx.alloc().heapBuffer(Math.min(maxBytes, msg.readableBytes() * 4));
+        try {
+            inflater.reset();
+            inflater.setInput(msg.nioBuffer());
+            while (!inflater.finished()) {
+                int n = inflater.inflate(chunk);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new CorruptedFrameException("Truncated compressed frame");
+                }
+                if (inflated.readableBytes() + n > maxBytes) {
+                    throw new TooLongFrameException("Decompressed frame exceeds " + maxBytes + " bytes");
+                }
+                inflated.writeBytes(chunk, 0, n);
+            }
+            return inflated;
+        } catch (RuntimeException | DataFormatException e) {
+            inflated.release();
+            throw e;
+        }
+    }
+
+    @Override
+    protected void encode(ChannelHandlerContext ctx, ByteBuf msg, List<Object> out) {
+        if (!enabled) {
+            out.add(msg.retain());
+            return;
+        }
+        int length = msg.readableBytes();
+        if (length >= MineAvatarConfig.WS_COMPRESSION_THRESHOLD.get()) {
+            ByteBuf compressed = deflate(ctx, msg);
+            if (compressed.readableBytes() < length + 1) {
+                out.add(compressed);
+                return;
+            }
+            compressed.release();
+        }
+        ByteBuf flag = ctx.alloc().buffer(1).writeByte(FLAG_PLAIN);
+        out.add(ctx.alloc().compositeBuffer(2).addComponents(true, flag, msg.retain()));
+    }
+
+    private ByteBuf deflate(ChannelHandlerContext ctx, ByteBuf msg) {
+        ByteBuf compressed = ctx.alloc().buffer(msg.readableBytes() / 2 + 16);
+        compressed.writeByte(FLAG_DEFLATE);
+        deflater.reset();
+        deflater.setInput(msg.nioBuffer());
+        deflater.finish();
+        while (!deflater.finished()) {
+            int n = deflater.deflate(chunk);
+            compressed.writeBytes(chunk, 0, n);
+        }
+        return compressed;
+    }
+
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) throws Exception {
+        deflater.end();
+        inflater.end();
+        super.handlerRemoved(ctx);
+    }
+}
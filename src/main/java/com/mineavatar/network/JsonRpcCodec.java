@@ -0,0 +1,391 @@
+package com.mineavatar.network;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import com.mineavatar.action.ActionResult;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.CharBuffer;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Default codec: UTF-8 JSON-RPC 2.0 text.
+ *
+ * Streams in both directions. Requests are read with a {@link JsonReader} that decodes UTF-8
+ * straight out of the frame buffer, so there is no intermediate String and no tree for the
+ * envelope — only {@code params} is materialized, because {@link com.mineavatar.action.ActionHandler}
+ * takes a {@link JsonObject}. Responses are written with a {@link JsonWriter} straight into the
+ * (pooled) output buffer; the {@link ActionResult} envelope is written field by field instead of
+ * going through {@link ActionResult#toJson()}. Byte attachments ({@link ActionResult#withBytes})
+ * are written as base64 strings.
+ *
+ * Besides {@code id}, {@code method} and {@code params}, a request may carry {@code timeoutMs}
+ * (relative to receipt) and/or {@code deadline} (epoch milliseconds); the earlier one wins.
+ */
+public final class JsonRpcCodec implements RpcCodec {
+
+    public static final JsonRpcCodec INSTANCE = new JsonRpcCodec();
+
+    private JsonRpcCodec() {}
+
+    // ── Decoding ────────────────────────────────────────────────────
+
+    @Override
+    public RpcFrame decode(ByteBuf frame) {
+        JsonReader reader = new JsonReader(new ByteBufUtf8Reader(frame));
+        reader.setLenient(true);
+        try {
+            JsonToken first = reader.peek();
+            RpcFrame result;
+            if (first == JsonToken.BEGIN_ARRAY) {
+                List<RpcRequest> requests = new ArrayList<>();
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    requests.add(readRequest(reader));
+                }
+                reader.endArray();
+                result = RpcFrame.batch(requests);
+            } else {
+                result = RpcFrame.single(readRequest(reader));
+            }
+            if (reader.peek() != JsonToken.END_DOCUMENT) {
+                return RpcFrame.parseError("Trailing data after JSON value");
+            }
+            return result;
+        } catch (IOException | IllegalStateException | NumberFormatException | JsonParseException e) {
+            return RpcFrame.parseError(e.getMessage());
+        }
+    }
+
+    private static RpcRequest readRequest(JsonReader reader) throws IOException {
+        if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+            reader.skipValue();
+            return RpcRequest.invalid(null, "Request must be a JSON object");
+        }
+
+        String id = null;
+        String method = null;
+        JsonObject params = null;
+        long deadlineNanos = 0;
+        boolean malformed = false;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            switch (name) {
+                case "id" -> {
+                    JsonToken token = reader.peek();
+                    if (token == JsonToken.NULL) {
+                        reader.nextNull();
+                    } else if (isPrimitive(token)) {
+                        id = nextPrimitiveString(reader);
+                    } else {
+                        reader.skipValue();
+                        malformed = true;
+                    }
+                }
+                case "method" -> {
+                    if (isPrimitive(reader.peek())) {
+                        method = nextPrimitiveString(reader);
+                    } else {
+                        reader.skipValue();
+                        malformed = true;
+                    }
+                }
+                case "params" -> {
+                    if (reader.peek() == JsonToken.BEGIN_OBJECT) {
+                        params = JsonParser.parseReader(reader).getAsJsonObject();
+                    } else {
+                        reader.skipValue();
+                    }
+                }
+                case "timeoutMs" -> {
+                    if (reader.peek() == JsonToken.NUMBER) {
+                        deadlineNanos = RpcRequest.earliest(deadlineNanos,
+                                RpcRequest.deadlineAfter((long) reader.nextDouble()));
+                    } else {
+                        reader.skipValue();
+                    }
+                }
+                case "deadline" -> {
+                    if (reader.peek() == JsonToken.NUMBER) {
+                        deadlineNanos = RpcRequest.earliest(deadlineNanos,
+                                RpcRequest.deadlineAt((long) reader.nextDouble()));
+                    } else {
+                        reader.skipValue();
+                    }
+                }
+                default -> reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        if (malformed) {
+            return RpcRequest.invalid(null, "'id' and 'method' must be primitives");
+        }
+        if (method == null) {
+            return RpcRequest.invalid(id, "Missing 'method' field");
+        }
+        return RpcRequest.of(id, method, params != null ? params : new JsonObject())
+                .withDeadline(deadlineNanos);
+    }
+
+    private static boolean isPrimitive(JsonToken token) {
+        return token == JsonToken.STRING || token == JsonToken.NUMBER || token == JsonToken.BOOLEAN;
+    }
+
+    private static String nextPrimitiveString(JsonReader reader) throws IOException {
+        return reader.peek() == JsonToken.BOOLEAN
+                ? Boolean.toString(reader.nextBoolean())
+                : reader.nextString();
+    }
+
+    // ── Encoding ────────────────────────────────────────────────────
+
+    @Override
+    public void encode(RpcMessage message, ByteBuf out) {
+        try (JsonWriter writer = newWriter(out)) {
+            writeMessage(message, writer);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void encodeBatch(List<? extends RpcMessage> messages, ByteBuf out) {
+        try (JsonWriter writer = newWriter(out)) {
+            writer.beginArray();
+            for (RpcMessage message : messages) {
+                writeMessage(message, writer);
+            }
+            writer.endArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static JsonWriter newWriter(ByteBuf out) {
+        JsonWriter writer = new JsonWriter(new ByteBufUtf8Writer(out));
+        writer.setLenient(true);
+        return writer;
+    }
+
+    private static void writeMessage(RpcMessage message, JsonWriter out) throws IOException {
+        switch (message) {
+            case RpcResponse response -> writeResponse(response, out);
+            case RpcNotification notification -> writeNotification(notification, out);
+        }
+    }
+
+    private static void writeNotification(RpcNotification notification, JsonWriter out) throws IOException {
+        out.beginObject();
+        out.name("jsonrpc").value("2.0");
+        out.name("method").value(notification.method());
+        out.name("params");
+        writeElement(notification.params(), out);
+        out.endObject();
+    }
+
+    private static void writeResponse(RpcResponse response, JsonWriter out) throws IOException {
+        out.beginObject();
+        out.name("jsonrpc").value("2.0");
+        if (response.getId() != null) out.name("id").value(response.getId());
+        if (response.isError()) {
+            out.name("error").beginObject();
+            out.name("code").value(response.getErrorCode());
+            out.name("message").value(response.getErrorMessage());
+            out.endObject();
+        } else if (response.getActionResult() != null) {
+            out.name("result");
+            writeActionResult(response.getActionResult(), out);
+        } else {
+            out.name("result");
+            writeElement(response.resultToJson(), out);
+        }
+        out.endObject();
+    }
+
+    /** Same shape as {@link ActionResult#toJson()}, without building the envelope tree. */
+    private static void writeActionResult(ActionResult result, JsonWriter out) throws IOException {
+        out.beginObject();
+        out.name("success").value(result.isSuccess());
+        if (result.isSuccess()) {
+            out.name("data");
+            if (result.getBytes().isEmpty()) {
+                writeElement(result.getData(), out);
+            } else {
+                out.beginObject();
+                for (Map.Entry<String, JsonElement> entry : result.getData().entrySet()) {
+                    out.name(entry.getKey());
+                    writeElement(entry.getValue(), out);
+                }
+                for (Map.Entry<String, byte[]> entry : result.getBytes().entrySet()) {
+                    out.name(entry.getKey()).value(Base64.getEncoder().encodeToString(entry.getValue()));
+                }
+                out.endObject();
+            }
+        } else {
+            out.name("error").value(result.getError());
+            out.name("message").value(result.getMessage());
+            if (result.getHint() != null) out.name("hint").value(result.getHint());
+        }
+        out.endObject();
+    }
+
+    private static void writeElement(@Nullable JsonElement element, JsonWriter out) throws IOException {
+        if (element == null || element.isJsonNull()) {
+            out.nullValue();
+        } else if (element.isJsonObject()) {
+            out.beginObject();
+            for (Map.Entry<String, JsonElement> entry : element.getAsJsonObject().entrySet()) {
+                out.name(entry.getKey());
+                writeElement(entry.getValue(), out);
+            }
+            out.endObject();
+        } else if (element.isJsonArray()) {
+            out.beginArray();
+            for (JsonElement child : element.getAsJsonArray()) {
+                writeElement(child, out);
+            }
+            out.endArray();
+        } else {
+            JsonPrimitive primitive = element.getAsJsonPrimitive();
+            if (primitive.isNumber()) {
+                out.value(primitive.getAsNumber());
+            } else if (primitive.isBoolean()) {
+                out.value(primitive.getAsBoolean());
+            } else {
+                out.value(primitive.getAsString());
+            }
+        }
+    }
+
+    // ── UTF-8 <-> ByteBuf adapters ──────────────────────────────────
+
+    /**
+     * Decodes UTF-8 directly from the readable bytes of a buffer. Malformed sequences
+     * become U+FFFD, matching {@code ByteBuf.toString(UTF_8)}.
+     */
+    private static final class ByteBufUtf8Reader extends Reader {
+        private final ByteBuf in;
+        private char pendingLowSurrogate;
+
+        ByteBufUtf8Reader(ByteBuf in) {
+            this.in = in;
+        }
+
+        @Override
+        public int read(char[] cbuf, int off, int len) {
+            if (len == 0) return 0;
+            int n = 0;
+            if (pendingLowSurrogate != 0) {
+                cbuf[off + n++] = pendingLowSurrogate;
+                pendingLowSurrogate = 0;
+            }
+            while (n < len && in.isReadable()) {
+                int b = in.readByte() & 0xFF;
+                if (b < 0x80) {
+                    cbuf[off + n++] = (char) b;
+                    continue;
+                }
+                int codePoint = decodeMultiByte(b);
+                if (Character.isSupplementaryCodePoint(codePoint)) {
+                    cbuf[off + n++] = Character.highSurrogate(codePoint);
+                    char low = Character.lowSurrogate(codePoint);
+                    if (n < len) {
+                        cbuf[off + n++] = low;
+                    } else {
+                        pendingLowSurrogate = low;
+                    }
+                } else {
+                    cbuf[off + n++] = (char) codePoint;
+                }
+            }
+            return n == 0 ? -1 : n;
+        }
+
+        private int decodeMultiByte(int lead) {
+            int extra;
+            int codePoint;
+            if ((lead & 0xE0) == 0xC0) {
+                extra = 1;
+                codePoint = lead & 0x1F;
+            } else if ((lead & 0xF0) == 0xE0) {
+                extra = 2;
+                codePoint = lead & 0x0F;
+            } else if ((lead & 0xF8) == 0xF0) {
+                extra = 3;
+                codePoint = lead & 0x07;
+            } else {
+                return 0xFFFD;
+            }
+            for (int i = 0; i < extra; i++) {
+                if (!in.isReadable()) return 0xFFFD;
+                int next = in.getByte(in.readerIndex()) & 0xFF;
+                if ((next & 0xC0) != 0x80) return 0xFFFD;
+                in.skipBytes(1);
+                codePoint = (codePoint << 6) | (next & 0x3F);
+            }
+            return codePoint <= Character.MAX_CODE_POINT ? codePoint : 0xFFFD;
+        }
+
+        @Override
+        public void close() {
+            // The frame buffer is owned and released by the pipeline.
+        }
+    }
+
+    /**
+     * Encodes characters as UTF-8 straight into the output buffer.
+     */
+    private static final class ByteBufUtf8Writer extends Writer {
+        private final ByteBuf out;
+
+        ByteBufUtf8Writer(ByteBuf out) {
+            this.out = out;
+        }
+
+        @Override
+        public void write(int c) {
+            if (c < 0x80) {
+                out.writeByte(c);
+            } else {
+                ByteBufUtil.writeUtf8(out, String.valueOf((char) c));
+            }
+        }
+
+        @Override
+        public void write(String str, int off, int len) {
+            ByteBufUtil.writeUtf8(out, str, off, off + len);
+        }
+
+        @Override
+        public void write(char[] cbuf, int off, int len) {
+            ByteBufUtil.writeUtf8(out, CharBuffer.wrap(cbuf, off, len));
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+            // The output buffer is handed to the next pipeline handler.
+        }
+    }
+}
@@ -1,113 +1,114 @@
 package com.mineavatar.network;
 
-import com.google.gson.JsonElement;
-import com.google.gson.JsonObject;
-import com.google.gson.JsonParser;
-import com.google.gson.JsonSyntaxException;
 import com.mineavatar.MineAvatar;
-import com.mineavatar.MineAvatarConfig;
-import com.mineavatar.action.ActionContext;
 import com.mineavatar.action.ActionRegistry;
-import com.mineavatar.action.ActionResult;
+import com.mineavatar.action.ActionScheduler;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.SimpleChannelInboundHandler;
 import net.minecraft.server.MinecraftServer;
 
-import javax.annotation.Nullable;
-
 /**
- * Handles JSON-RPC 2.0 messages over length-prefixed TCP.
- * Transport-agnostic: receives decoded String messages from the Netty pipeline,
- * writes String responses back (pipeline handles length-prefix encoding).
+ * Netty end of an {@link RpcSession}: feeds decoded {@link RpcFrame}s from the pipeline
+ * into the session and writes its responses back ({@link RpcFrameCodec} handles the
+ * wire encoding, the pipeline handles the length prefix).
  */
-public class JsonRpcHandler extends SimpleChannelInboundHandler<String> {
+public class JsonRpcHandler extends SimpleChannelInboundHandler<RpcFrame> implements RpcTransport {
 
-    private final MinecraftServer server;
-    private final ActionRegistry registry;
-    private boolean authenticated = false;
+    private RpcSession session;
+    private ChannelHandlerContext ctx;
 
-    public JsonRpcHandler(MinecraftServer server, ActionRegistry registry) {
-        this.server = server;
-        this.registry = registry;
+    public JsonRpcHandler(MinecraftServer server, ActionRegistry registry, ActionScheduler scheduler) {
+        this.session = new RpcSession(server, registry, scheduler, this);
     }
 
     @Override
-    protected void channelRead0(ChannelHandlerContext ctx, String text) {
-        JsonObject request;
-        try {
-            request = JsonParser.parseString(text).getAsJsonObject();
-        } catch (JsonSyntaxException | IllegalStateException e) {
-            ctx.writeAndFlush(errorResponse(null, -32700, "Parse error: " + e.getMessage()));
-            return;
-        }
+    public void handlerAdded(ChannelHandlerContext ctx) {
+        this.ctx = ctx;
+    }
 
-        JsonElement idElem = request.get("id");
-        String id = idElem != null && !idElem.isJsonNull() ? idElem.getAsString() : null;
-        String method = request.has("method") ? request.get("method").getAsString() : null;
-        JsonObject params = request.has("params") && request.get("params").isJsonObject()
-                ? request.getAsJsonObject("params")
-                : new JsonObject();
+    @Override
+    protected void channelRead0(ChannelHandlerContext ctx, RpcFrame frame) {
+        session.handleFrame(frame);
+    }
 
-        if (method == null) {
-            ctx.writeAndFlush(errorResponse(id, -32600, "Missing 'method' field"));
-            return;
-        }
+    // ── RpcTransport ────────────────────────────────────────────────
 
-        if ("auth".equals(method)) {
-            handleAuth(ctx, id, params);
-            return;
-        }
+    @Override
+    public void send(Object message) {
+        ctx.writeAndFlush(message);
+    }
 
-        if (!authenticated) {
-            ctx.writeAndFlush(errorResponse(id, -32000, "Not authenticated. Send 'auth' first."));
-            return;
+    @Override
+    public void switchProtocol(RpcProtocol protocol) {
+        RpcFrameCodec frameCodec = ctx.pipeline().get(RpcFrameCodec.class);
+        if (frameCodec != null) {
+            frameCodec.setProtocol(protocol);
         }
+    }
 
-        server.execute(() -> {
-            ActionContext actionCtx = new ActionContext(server);
-            ActionResult result = registry.dispatch(method, actionCtx, params);
-
-            JsonObject response = new JsonObject();
-            response.addProperty("jsonrpc", "2.0");
-            if (id != null) response.addProperty("id", id);
-            response.add("result", result.toJson());
+    @Override
+    public boolean supportsCompression() {
+        return ctx.pipeline().get(FrameCompressionCodec.class) != null;
+    }
 
-            ctx.writeAndFlush(response.toString());
-        });
+    @Override
+    public void enableCompression() {
+        FrameCompressionCodec compression = ctx.pipeline().get(FrameCompressionCodec.class);
+        if (compression != null) {
+            compression.enable();
+        }
     }
 
-    private void handleAuth(ChannelHandlerContext ctx, @Nullable String id, JsonObject params) {
-        String token = params.has("token") ? params.get("token").getAsString() : "";
-        String expectedToken = MineAvatarConfig.WS_TOKEN.get();
+    @Override
+    public void readPauseChanged() {
+        ctx.channel().eventLoop().execute(this::updateAutoRead);
+    }
 
-        if (!expectedToken.equals(token)) {
-            ctx.writeAndFlush(errorResponse(id, -32001, "Invalid token"));
-            return;
-        }
+    /**
+     * Read only while the session is below its pending-request limit and the outbound buffer
+     * is below the high watermark — a stalled controller stops feeding the main-thread queue.
+     */
+    private void updateAutoRead() {
+        ctx.channel().config().setAutoRead(!session.isReadPaused() && ctx.channel().isWritable());
+    }
 
-        authenticated = true;
-        MineAvatar.LOGGER.info("[TCP] Client authenticated from {}", ctx.channel().remoteAddress());
+    @Override
+    public boolean isBacklogged() {
+        return !ctx.channel().isWritable();
+    }
 
-        JsonObject result = new JsonObject();
-        result.addProperty("success", true);
+    @Override
+    public void resumed(RpcSession session) {
+        this.session = session;
+    }
 
-        JsonObject response = new JsonObject();
-        response.addProperty("jsonrpc", "2.0");
-        if (id != null) response.addProperty("id", id);
-        response.add("result", result);
+    @Override
+    public void disconnect() {
+        ctx.close();
+    }
 
-        ctx.writeAndFlush(response.toString());
+    @Override
+    public String describe() {
+        return String.valueOf(ctx.channel().remoteAddress());
     }
 
+    // ── Channel lifecycle ───────────────────────────────────────────
+
     @Override
     public void channelActive(ChannelHandlerContext ctx) {
         MineAvatar.LOGGER.info("[TCP] Client connected: {}", ctx.channel().remoteAddress());
     }
 
+    @Override
+    public void channelWritabilityChanged(ChannelHandlerContext ctx) {
+        updateAutoRead();
+        ctx.fireChannelWritabilityChanged();
+    }
+
     @Override
     public void channelInactive(ChannelHandlerContext ctx) {
         MineAvatar.LOGGER.info("[TCP] Client disconnected: {}", ctx.channel().remoteAddress());
-        authenticated = false;
+        session.detach(this);
     }
 
     @Override
@@ -115,16 +116,4 @@ public class JsonRpcHandler extends SimpleChannelInboundHandler<String> {
         MineAvatar.LOGGER.error("[TCP] Handler exception from {}", ctx.channel().remoteAddress(), cause);
         ctx.close();
     }
-
-    private static String errorResponse(@Nullable String id, int code, String message) {
-        JsonObject error = new JsonObject();
-        error.addProperty("code", code);
-        error.addProperty("message", message);
-
-        JsonObject response = new JsonObject();
-        response.addProperty("jsonrpc", "2.0");
-        if (id != null) response.addProperty("id", id);
-        response.add("error", error);
-        return response.toString();
-    }
 }
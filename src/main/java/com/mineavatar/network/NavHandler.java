@@ -0,0 +1,97 @@
+package com.mineavatar.network;
+
+import com.google.gson.JsonObject;
+import com.mineavatar.event.AgentEvent;
+import com.mineavatar.event.AgentEventHub;
+import com.mineavatar.event.AgentEventListener;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * {@code nav.subscribe} (optionally {@code {"agents": [names]}}) subscribes the session to the
+ * {@code nav.*} notifications of {@link AgentEventHub}: all of one tick's events go out as one
+ * frame, and they are buffered like responses while detached. {@code nav.unsubscribe} stops them.
+ */
+final class NavHandler implements SessionHandler {
+
+    private static final String SUBSCRIBE_METHOD = "nav.subscribe";
+    private static final String UNSUBSCRIBE_METHOD = "nav.unsubscribe";
+    private static final String EVENT_PREFIX = "nav.";
+
+    private final RpcSession session;
+    /** Agents whose nav.* events are forwarded; empty for all, null when not subscribed. */
+    @Nullable
+    private volatile Set<String> agents;
+    private final AgentEventListener listener = this::forwardEvents;
+
+    NavHandler(RpcSession session) {
+        this.session = session;
+    }
+
+    @Override
+    public Map<String, Method> methods() {
+        return Map.of(SUBSCRIBE_METHOD, this::subscribe, UNSUBSCRIBE_METHOD, this::unsubscribe);
+    }
+
+    @Override
+    public void close() {
+        agents = null;
+        AgentEventHub.get().removeListener(listener);
+    }
+
+    /**
+     * {@code nav.subscribe}: forward nav.* events of the listed agents (all agents if
+     * {@code agents} is absent or empty). A second call replaces the agent filter.
+     */
+    private RpcResponse subscribe(RpcRequest request) {
+        Set<String> names = SessionHandler.agentNames(request.params());
+        if (names == null) {
+            return RpcResponse.error(request.id(), -32602, "'agents' must be an array of agent names");
+        }
+        boolean wasSubscribed = agents != null;
+        agents = Set.copyOf(names);
+        if (!wasSubscribed) {
+            AgentEventHub.get().addListener(listener);
+        }
+        JsonObject data = new JsonObject();
+        data.addProperty("subscribed", true);
+        data.addProperty("agents", names.isEmpty() ? "all" : String.join(",", names));
+        return SessionHandler.reply(request, data);
+    }
+
+    private RpcResponse unsubscribe(RpcRequest request) {
+        boolean wasSubscribed = agents != null;
+        close();
+        JsonObject data = new JsonObject();
+        data.addProperty("unsubscribed", wasSubscribed);
+        return SessionHandler.reply(request, data);
+    }
+
+    /**
+     * Called on the server thread at the end of each tick with that tick's events.
+     * Sends the matching ones as a single notification or one array frame.
+     */
+    private void forwardEvents(long tick, List<AgentEvent> events) {
+        Set<String> filter = agents;
+        if (filter == null) return;
+        List<RpcNotification> notifications = new ArrayList<>();
+        for (AgentEvent event : events) {
+            if (!event.type().startsWith(EVENT_PREFIX)) continue;
+            if (!filter.isEmpty() && (event.agent() == null || !filter.contains(event.agent()))) continue;
+            JsonObject params = new JsonObject();
+            params.addProperty("agent", event.agent());
+            params.addProperty("tick", tick);
+            event.data().entrySet().forEach(entry -> params.add(entry.getKey(), entry.getValue()));
+            notifications.add(new RpcNotification(event.type(), params));
+        }
+        if (notifications.size() == 1) {
+            session.send(notifications.get(0));
+        } else if (!notifications.isEmpty()) {
+            session.send(notifications);
+        }
+    }
+}
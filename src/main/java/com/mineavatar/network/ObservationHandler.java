@@ -0,0 +1,150 @@
+package com.mineavatar.network;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.mineavatar.action.ActionResult;
+import com.mineavatar.perception.ObservationLayout;
+import com.mineavatar.perception.PerceptionField;
+import com.mineavatar.perception.PerceptionSnapshots;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@code observation.register} ({@code agents}, {@code fields}, {@code stride},
+ * {@code agentSlots}) fixes an {@link ObservationLayout} for the session; each
+ * {@code observation.step} ({@code layout}) then answers with that layout filled from the latest
+ * snapshot as one packed {@code observation} buffer, on the I/O thread like perception.self.
+ * {@code observation.unregister} ({@code layout}) forgets a layout.
+ */
+final class ObservationHandler implements SessionHandler {
+
+    private static final String REGISTER_METHOD = "observation.register";
+    private static final String UNREGISTER_METHOD = "observation.unregister";
+    private static final String STEP_METHOD = "observation.step";
+    private static final int MAX_LAYOUTS = 64;
+    private static final int MAX_AGENT_SLOTS = 1024;
+    private static final int MAX_STRIDE = 256;
+
+    /** Registered layouts by ID. */
+    private final Map<Integer, ObservationLayout> layouts = new ConcurrentHashMap<>();
+    private final AtomicInteger nextLayoutId = new AtomicInteger();
+
+    @Override
+    public Map<String, Method> methods() {
+        return Map.of(REGISTER_METHOD, this::register, UNREGISTER_METHOD, this::unregister,
+                STEP_METHOD, this::step);
+    }
+
+    @Override
+    public void close() {
+        layouts.clear();
+    }
+
+    /**
+     * {@code observation.register}: {@code agents} (required, in buffer order), {@code fields}
+     * (numeric perception.self fields, default all of them), {@code stride} (slots per agent,
+     * at least the used ones) and {@code agentSlots} (agent blocks, at least {@code agents}).
+     * Replies with the layout ID and the slot offsets.
+     */
+    private RpcResponse register(RpcRequest request) {
+        JsonObject params = request.params();
+        if (!params.has("agents") || !params.get("agents").isJsonArray() || params.getAsJsonArray("agents").isEmpty()) {
+            return RpcResponse.error(request.id(), -32602, "'agents' must be a non-empty array of agent names");
+        }
+        List<String> agents = new ArrayList<>();
+        for (JsonElement name : params.getAsJsonArray("agents")) {
+            if (!name.isJsonPrimitive()) {
+                return RpcResponse.error(request.id(), -32602, "'agents' must be a non-empty array of agent names");
+            }
+            agents.add(name.getAsString());
+        }
+
+        List<PerceptionField> fields = new ArrayList<>();
+        if (params.has("fields")) {
+            if (!params.get("fields").isJsonArray()) {
+                return RpcResponse.error(request.id(), -32602, "'fields' must be an array of field names");
+            }
+            for (JsonElement field : params.getAsJsonArray("fields")) {
+                PerceptionField known = field.isJsonPrimitive() ? PerceptionField.fromWireName(field.getAsString()) : null;
+                if (known == null || ObservationLayout.slots(known) == 0) {
+                    return RpcResponse.error(request.id(), -32602, "Unknown or non-numeric observation field '"
+                            + (field.isJsonPrimitive() ? field.getAsString() : field) + "' (available: " + numericFields() + ")");
+                }
+                fields.add(known);
+            }
+        } else {
+            for (PerceptionField field : PerceptionField.values()) {
+                if (ObservationLayout.slots(field) > 0) fields.add(field);
+            }
+        }
+
+        int used = ObservationLayout.usedSlots(fields);
+        int stride = intParam(params, "stride", used);
+        if (stride < used || stride > MAX_STRIDE) {
+            return RpcResponse.error(request.id(), -32602,
+                    "'stride' must be between " + used + " and " + MAX_STRIDE);
+        }
+        int agentSlots = intParam(params, "agentSlots", agents.size());
+        if (agentSlots < agents.size() || agentSlots > MAX_AGENT_SLOTS) {
+            return RpcResponse.error(request.id(), -32602,
+                    "'agentSlots' must be between " + agents.size() + " and " + MAX_AGENT_SLOTS);
+        }
+        if (layouts.size() >= MAX_LAYOUTS) {
+            return RpcResponse.error(request.id(), -32602,
+                    "At most " + MAX_LAYOUTS + " observation layouts per session");
+        }
+
+        ObservationLayout layout = new ObservationLayout(nextLayoutId.incrementAndGet(), agents, fields, stride, agentSlots);
+        layouts.put(layout.getId(), layout);
+        return SessionHandler.reply(request, layout.describe());
+    }
+
+    /** An optional integer parameter; -1 if present but not a number. */
+    private static int intParam(JsonObject params, String name, int defaultValue) {
+        if (!params.has(name)) return defaultValue;
+        JsonElement value = params.get(name);
+        return value.isJsonPrimitive() && value.getAsJsonPrimitive().isNumber() ? value.getAsInt() : -1;
+    }
+
+    private static String numericFields() {
+        StringJoiner names = new StringJoiner(", ");
+        for (PerceptionField field : PerceptionField.values()) {
+            if (ObservationLayout.slots(field) > 0) names.add(field.getWireName());
+        }
+        return names.toString();
+    }
+
+    private RpcResponse unregister(RpcRequest request) {
+        JsonElement layout = request.params().get("layout");
+        boolean removed = layout != null && layout.isJsonPrimitive() && layout.getAsJsonPrimitive().isNumber()
+                && layouts.remove(layout.getAsInt()) != null;
+        JsonObject data = new JsonObject();
+        data.addProperty("unregistered", removed);
+        return SessionHandler.reply(request, data);
+    }
+
+    /**
+     * {@code observation.step}: the registered layout filled from the latest snapshot frame.
+     */
+    private RpcResponse step(RpcRequest request) {
+        JsonElement id = request.params().get("layout");
+        ObservationLayout layout = id != null && id.isJsonPrimitive() && id.getAsJsonPrimitive().isNumber()
+                ? layouts.get(id.getAsInt()) : null;
+        if (layout == null) {
+            return RpcResponse.error(request.id(), -32602, "'layout' must be the ID of a registered observation layout");
+        }
+        if (request.id() == null) {
+            return RpcSession.NO_REPLY;
+        }
+        PerceptionSnapshots.Frame frame = PerceptionSnapshots.get().current();
+        JsonObject data = new JsonObject();
+        data.addProperty("layout", layout.getId());
+        data.addProperty("tick", frame.tick());
+        return RpcResponse.of(request.id(), ActionResult.ok(data).withBytes("observation", layout.write(frame)));
+    }
+}
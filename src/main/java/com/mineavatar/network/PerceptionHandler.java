@@ -0,0 +1,189 @@
+package com.mineavatar.network;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.mineavatar.action.ActionRegistry;
+import com.mineavatar.perception.AgentSnapshot;
+import com.mineavatar.perception.PerceptionField;
+import com.mineavatar.perception.PerceptionSnapshots;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@code perception.subscribe} ({@code agents}, {@code fields}, {@code periodTicks}) pushes
+ * {@code perception.update} notifications built from the per-tick snapshot. Every subscription
+ * due in a tick goes out in one frame. Pushes skip a backlogged or detached client instead of
+ * queueing: it gets the then-current state once it catches up, with a {@code skipped} count.
+ * {@code perception.unsubscribe} ({@code subscription}) ends one subscription.
+ */
+final class PerceptionHandler implements SessionHandler {
+
+    private static final String SUBSCRIBE_METHOD = "perception.subscribe";
+    private static final String UNSUBSCRIBE_METHOD = "perception.unsubscribe";
+    private static final String UPDATE_METHOD = "perception.update";
+
+    private final RpcSession session;
+    /** Subscriptions by ID. Added and removed on the I/O thread, pushed on the server thread. */
+    private final Map<Integer, Subscription> subscriptions = new ConcurrentHashMap<>();
+    private final AtomicInteger nextSubscriptionId = new AtomicInteger();
+    private final PerceptionSnapshots.FrameListener frameListener = this::push;
+
+    PerceptionHandler(RpcSession session) {
+        this.session = session;
+    }
+
+    @Override
+    public Map<String, Method> methods() {
+        return Map.of(SUBSCRIBE_METHOD, this::subscribe, UNSUBSCRIBE_METHOD, this::unsubscribe);
+    }
+
+    @Override
+    public void close() {
+        subscriptions.clear();
+        PerceptionSnapshots.get().removeListener(frameListener);
+    }
+
+    /**
+     * One perception.subscribe. {@code nextDueTick} is only touched on the server thread.
+     */
+    private static final class Subscription {
+        final int id;
+        /** Empty for all agents. */
+        final Set<String> agents;
+        /** Null for every field. */
+        @Nullable
+        final Set<PerceptionField> fields;
+        final int periodTicks;
+        long nextDueTick = -1;
+
+        Subscription(int id, Set<String> agents, @Nullable Set<PerceptionField> fields, int periodTicks) {
+            this.id = id;
+            this.agents = agents;
+            this.fields = fields;
+            this.periodTicks = periodTicks;
+        }
+
+        RpcNotification update(PerceptionSnapshots.Frame frame, long skipped) {
+            JsonArray updates = new JsonArray();
+            if (agents.isEmpty()) {
+                frame.agents().forEach(agent -> updates.add(select(agent)));
+            } else {
+                for (String name : agents) {
+                    AgentSnapshot agent = frame.agent(name);
+                    if (agent != null) updates.add(select(agent));
+                }
+            }
+            JsonObject params = new JsonObject();
+            params.addProperty("subscription", id);
+            params.addProperty("tick", frame.tick());
+            if (skipped > 0) params.addProperty("skipped", skipped);
+            params.add("agents", updates);
+            return new RpcNotification(UPDATE_METHOD, params);
+        }
+
+        private JsonObject select(AgentSnapshot agent) {
+            return fields != null
+                    ? ActionRegistry.perceptionSelfFields(agent, fields)
+                    : ActionRegistry.perceptionSelfData(agent);
+        }
+    }
+
+    /**
+     * {@code perception.subscribe}: push the perception.self fields in {@code fields} (default all)
+     * of the agents in {@code agents} (default all) every {@code periodTicks} ticks (default 1).
+     * Replies with the subscription ID for {@code perception.unsubscribe}.
+     */
+    private RpcResponse subscribe(RpcRequest request) {
+        JsonObject params = request.params();
+        Set<String> agents = SessionHandler.agentNames(params);
+        if (agents == null) {
+            return RpcResponse.error(request.id(), -32602, "'agents' must be an array of agent names");
+        }
+
+        Set<PerceptionField> fields = null;
+        if (params.has("fields")) {
+            if (!params.get("fields").isJsonArray()) {
+                return RpcResponse.error(request.id(), -32602, "'fields' must be an array of field names");
+            }
+            fields = EnumSet.noneOf(PerceptionField.class);
+            for (JsonElement field : params.getAsJsonArray("fields")) {
+                String name = field.isJsonPrimitive() ? field.getAsString() : "";
+                if ("tick".equals(name)) continue;  // every update carries it
+                PerceptionField known = PerceptionField.fromWireName(name);
+                if (known == null) {
+                    return RpcResponse.error(request.id(), -32602, "Unknown perception field '" + name
+                            + "' (available: " + availableFields() + ")");
+                }
+                fields.add(known);
+            }
+        }
+
+        int periodTicks = 1;
+        if (params.has("periodTicks")) {
+            JsonElement period = params.get("periodTicks");
+            periodTicks = period.isJsonPrimitive() && period.getAsJsonPrimitive().isNumber() ? period.getAsInt() : 0;
+        }
+        if (periodTicks < 1) {
+            return RpcResponse.error(request.id(), -32602, "'periodTicks' must be at least 1");
+        }
+
+        int id = nextSubscriptionId.incrementAndGet();
+        subscriptions.put(id, new Subscription(id, Set.copyOf(agents), fields, periodTicks));
+        PerceptionSnapshots.get().addListener(frameListener);
+        JsonObject data = new JsonObject();
+        data.addProperty("subscription", id);
+        data.addProperty("periodTicks", periodTicks);
+        return SessionHandler.reply(request, data);
+    }
+
+    private static String availableFields() {
+        StringBuilder names = new StringBuilder();
+        for (PerceptionField field : PerceptionField.values()) {
+            names.append(field.getWireName()).append(", ");
+        }
+        return names.append("tick").toString();
+    }
+
+    private RpcResponse unsubscribe(RpcRequest request) {
+        JsonElement subscription = request.params().get("subscription");
+        boolean removed = subscription != null && subscription.isJsonPrimitive()
+                && subscription.getAsJsonPrimitive().isNumber()
+                && subscriptions.remove(subscription.getAsInt()) != null;
+        if (subscriptions.isEmpty()) {
+            PerceptionSnapshots.get().removeListener(frameListener);
+        }
+        JsonObject data = new JsonObject();
+        data.addProperty("unsubscribed", removed);
+        return SessionHandler.reply(request, data);
+    }
+
+    /**
+     * Called on the server thread with each new snapshot frame. Sends the updates of every
+     * subscription due this tick as one frame. A subscription that is due while the client is
+     * detached or backlogged stays due, so the client gets the latest state, not a queue of old ones.
+     */
+    private void push(PerceptionSnapshots.Frame frame) {
+        if (subscriptions.isEmpty() || !session.acceptsPushes()) return;
+        List<RpcNotification> updates = new ArrayList<>();
+        for (Subscription subscription : subscriptions.values()) {
+            if (frame.tick() < subscription.nextDueTick) continue;
+            long skipped = subscription.nextDueTick < 0 ? 0
+                    : (frame.tick() - subscription.nextDueTick) / subscription.periodTicks;
+            subscription.nextDueTick = frame.tick() + subscription.periodTicks;
+            updates.add(subscription.update(frame, skipped));
+        }
+        if (updates.size() == 1) {
+            session.send(updates.get(0));
+        } else if (!updates.isEmpty()) {
+            session.send(updates);
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.mineavatar.network;
+
+import com.google.gson.JsonObject;
+import com.mineavatar.action.ActionResult;
+
+import javax.annotation.Nullable;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Recent request results of one session, keyed by request ID, so a client retrying a request
+ * it never saw the answer to gets the original result instead of running the action again.
+ * A request only counts as a retry if its method and params match too; a reused ID with
+ * anything else is a new command and runs.
+ *
+ * Bounded in size (least recently used entry goes first) and in time (entries expire after the
+ * TTL). Entries hold a future, so a retry that arrives while the original is still queued waits
+ * for the same result.
+ */
+final class ReplayCache {
+
+    private record Entry(String method, JsonObject params, CompletableFuture<ActionResult> result,
+                         long expiresAtNanos) {}
+
+    private final int maxEntries;
+    private final long ttlNanos;
+    private final LinkedHashMap<String, Entry> entries;
+
+    ReplayCache(int maxEntries, long ttlNanos) {
+        this.maxEntries = maxEntries;
+        this.ttlNanos = ttlNanos;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > ReplayCache.this.maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Result of an earlier request with this ID, method and params, or null if there is none
+     * (or it expired).
+     */
+    @Nullable
+    synchronized CompletableFuture<ActionResult> get(String id, String method, JsonObject params) {
+        Entry entry = entries.get(id);
+        if (entry == null) return null;
+        if (System.nanoTime() - entry.expiresAtNanos() > 0 || !entry.method().equals(method)
+                || !entry.params().equals(params)) {
+            entries.remove(id);
+            return null;
+        }
+        return entry.result();
+    }
+
+    synchronized void put(String id, String method, JsonObject params, CompletableFuture<ActionResult> result) {
+        entries.put(id, new Entry(method, params, result, System.nanoTime() + ttlNanos));
+    }
+
+    /**
+     * Forget a result that must not be replayed, if it is still the cached one for its ID.
+     */
+    synchronized void remove(String id, CompletableFuture<ActionResult> result) {
+        Entry entry = entries.get(id);
+        if (entry != null && entry.result() == result) {
+            entries.remove(id);
+        }
+    }
+
+    synchronized void clear() {
+        entries.clear();
+    }
+}
@@ -0,0 +1,26 @@
+package com.mineavatar.network;
+
+import io.netty.buffer.ByteBuf;
+
+import java.util.List;
+
+/**
+ * Wire encoding for RPC frames. Works on the payload of one length-prefixed frame;
+ * framing itself stays in the Netty pipeline.
+ */
+public interface RpcCodec {
+
+    /**
+     * Decode one inbound frame. Never throws for malformed input — returns
+     * {@link RpcFrame#parseError} instead so the client gets a proper error response.
+     */
+    RpcFrame decode(ByteBuf frame);
+
+    void encode(RpcMessage message, ByteBuf out);
+
+    /**
+     * Encode several messages as one frame: the responses of a batch request, or the
+     * notifications of one server tick.
+     */
+    void encodeBatch(List<? extends RpcMessage> messages, ByteBuf out);
+}
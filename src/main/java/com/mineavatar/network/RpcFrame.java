@@ -0,0 +1,23 @@
+package com.mineavatar.network;
+
+import javax.annotation.Nullable;
+import java.util.List;
+
+/**
+ * The decoded content of one inbound frame: a single request, a batch of requests,
+ * or a parse error when the payload could not be decoded at all.
+ */
+public record RpcFrame(boolean batch, List<RpcRequest> requests, @Nullable String parseError) {
+
+    public static RpcFrame single(RpcRequest request) {
+        return new RpcFrame(false, List.of(request), null);
+    }
+
+    public static RpcFrame batch(List<RpcRequest> requests) {
+        return new RpcFrame(true, requests, null);
+    }
+
+    public static RpcFrame parseError(String message) {
+        return new RpcFrame(false, List.of(), message);
+    }
+}
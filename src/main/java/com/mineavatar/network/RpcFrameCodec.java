@@ -0,0 +1,64 @@
+package com.mineavatar.network;
+
+import com.mineavatar.action.ActionRegistry;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.MessageToMessageCodec;
+
+import java.util.List;
+
+/**
+ * Converts frame payloads to {@link RpcFrame}s and {@link RpcMessage}s (or lists of them,
+ * for batches) back to payloads, using the protocol negotiated for this connection.
+ *
+ * Sits between the length-field framing handlers and {@link JsonRpcHandler}.
+ * Only touched from the channel's event loop, so the protocol switch needs no locking:
+ * a response written before {@link #setProtocol} is already encoded with the old codec.
+ */
+public class RpcFrameCodec extends MessageToMessageCodec<ByteBuf, Object> {
+
+    private final ActionRegistry registry;
+    private RpcProtocol protocol = RpcProtocol.JSON;
+    private RpcCodec codec = JsonRpcCodec.INSTANCE;
+
+    public RpcFrameCodec(ActionRegistry registry) {
+        this.registry = registry;
+    }
+
+    public RpcProtocol getProtocol() { return protocol; }
+
+    public void setProtocol(RpcProtocol protocol) {
+        this.protocol = protocol;
+        this.codec = switch (protocol) {
+            case JSON -> JsonRpcCodec.INSTANCE;
+            case BINARY -> new BinaryRpcCodec(registry);
+        };
+    }
+
+    @Override
+    public boolean acceptOutboundMessage(Object msg) {
+        return msg instanceof RpcMessage || msg instanceof List<?>;
+    }
+
+    @Override
+    protected void decode(ChannelHandlerContext ctx, ByteBuf msg, List<Object> out) {
+        out.add(codec.decode(msg));
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    protected void encode(ChannelHandlerContext ctx, Object msg, List<Object> out) {
+        ByteBuf buf = ctx.alloc().buffer();
+        try {
+            if (msg instanceof RpcMessage message) {
+                codec.encode(message, buf);
+            } else {
+                codec.encodeBatch((List<RpcMessage>) msg, buf);
+            }
+        } catch (RuntimeException e) {
+            buf.release();
+            throw e;
+        }
+        out.add(buf);
+    }
+}
@@ -0,0 +1,7 @@
+package com.mineavatar.network;
+
+/**
+ * Anything the server sends: a response to a request, or a server-initiated notification.
+ */
+public sealed interface RpcMessage permits RpcResponse, RpcNotification {
+}
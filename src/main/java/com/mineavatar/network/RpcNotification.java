@@ -0,0 +1,18 @@
+package com.mineavatar.network;
+
+import com.google.gson.JsonObject;
+
+/**
+ * One outbound JSON-RPC notification (no {@code id}, no reply expected), independent of
+ * the wire encoding. Used for events the server pushes to subscribed clients.
+ */
+public record RpcNotification(String method, JsonObject params) implements RpcMessage {
+
+    public JsonObject toJson() {
+        JsonObject notification = new JsonObject();
+        notification.addProperty("jsonrpc", "2.0");
+        notification.addProperty("method", method);
+        notification.add("params", params);
+        return notification;
+    }
+}
@@ -0,0 +1,27 @@
+package com.mineavatar.network;
+
+import javax.annotation.Nullable;
+
+/**
+ * Frame encodings a client can pick during {@code auth}. JSON is the default.
+ */
+public enum RpcProtocol {
+    JSON("json"),
+    BINARY("binary");
+
+    private final String wireName;
+
+    RpcProtocol(String wireName) {
+        this.wireName = wireName;
+    }
+
+    public String getWireName() { return wireName; }
+
+    @Nullable
+    public static RpcProtocol fromWireName(String name) {
+        for (RpcProtocol protocol : values()) {
+            if (protocol.wireName.equals(name)) return protocol;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,52 @@
+package com.mineavatar.network;
+
+import com.google.gson.JsonObject;
+
+import javax.annotation.Nullable;
+
+/**
+ * One decoded JSON-RPC request, independent of the wire encoding.
+ * When {@code invalidReason} is set the entry could not be understood and must be
+ * answered with an Invalid Request error instead of being dispatched.
+ *
+ * {@code deadlineNanos} is the {@link System#nanoTime()} after which the request is no longer
+ * worth running (from the optional {@code deadline}/{@code timeoutMs} fields), or 0 for none.
+ */
+public record RpcRequest(@Nullable String id, @Nullable String method, JsonObject params,
+                         @Nullable String invalidReason, long deadlineNanos) {
+
+    public static RpcRequest of(@Nullable String id, String method, JsonObject params) {
+        return new RpcRequest(id, method, params, null, 0L);
+    }
+
+    public static RpcRequest invalid(@Nullable String id, String reason) {
+        return new RpcRequest(id, null, new JsonObject(), reason, 0L);
+    }
+
+    public RpcRequest withDeadline(long deadlineNanos) {
+        return new RpcRequest(id, method, params, invalidReason, deadlineNanos);
+    }
+
+    public boolean isValid() { return invalidReason == null; }
+
+    /** Deadline for a request that may wait at most {@code timeoutMs} from now. */
+    public static long deadlineAfter(long timeoutMs) {
+        return nonZero(System.nanoTime() + Math.max(0, timeoutMs) * 1_000_000L);
+    }
+
+    /** Deadline for an absolute wall-clock time, in epoch milliseconds. */
+    public static long deadlineAt(long epochMillis) {
+        return deadlineAfter(epochMillis - System.currentTimeMillis());
+    }
+
+    /** Earlier of two deadlines, where 0 means none. */
+    public static long earliest(long a, long b) {
+        if (a == 0) return b;
+        if (b == 0) return a;
+        return a - b < 0 ? a : b;
+    }
+
+    private static long nonZero(long nanos) {
+        return nanos == 0 ? 1 : nanos;
+    }
+}
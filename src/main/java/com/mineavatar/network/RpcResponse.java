@@ -0,0 +1,69 @@
+package com.mineavatar.network;
+
+import com.google.gson.JsonObject;
+import com.mineavatar.action.ActionResult;
+
+import javax.annotation.Nullable;
+
+/**
+ * One outbound JSON-RPC response, independent of the wire encoding.
+ * Carries either an {@link ActionResult}, a protocol-level result object (e.g. auth),
+ * or a JSON-RPC error.
+ */
+public final class RpcResponse implements RpcMessage {
+
+    @Nullable private final String id;
+    @Nullable private final ActionResult actionResult;
+    @Nullable private final JsonObject result;
+    private final int errorCode;
+    @Nullable private final String errorMessage;
+
+    private RpcResponse(@Nullable String id, @Nullable ActionResult actionResult, @Nullable JsonObject result,
+                        int errorCode, @Nullable String errorMessage) {
+        this.id = id;
+        this.actionResult = actionResult;
+        this.result = result;
+        this.errorCode = errorCode;
+        this.errorMessage = errorMessage;
+    }
+
+    public static RpcResponse of(@Nullable String id, ActionResult actionResult) {
+        return new RpcResponse(id, actionResult, null, 0, null);
+    }
+
+    public static RpcResponse of(@Nullable String id, JsonObject result) {
+        return new RpcResponse(id, null, result, 0, null);
+    }
+
+    public static RpcResponse error(@Nullable String id, int code, String message) {
+        return new RpcResponse(id, null, null, code, message);
+    }
+
+    @Nullable public String getId() { return id; }
+    public boolean isError() { return errorMessage != null; }
+    public int getErrorCode() { return errorCode; }
+    @Nullable public String getErrorMessage() { return errorMessage; }
+    @Nullable public ActionResult getActionResult() { return actionResult; }
+
+    /**
+     * The {@code result} member as a JSON tree. Only valid for non-error responses.
+     */
+    public JsonObject resultToJson() {
+        return actionResult != null ? actionResult.toJson() : result;
+    }
+
+    public JsonObject toJson() {
+        JsonObject response = new JsonObject();
+        response.addProperty("jsonrpc", "2.0");
+        if (id != null) response.addProperty("id", id);
+        if (isError()) {
+            JsonObject error = new JsonObject();
+            error.addProperty("code", errorCode);
+            error.addProperty("message", errorMessage);
+            response.add("error", error);
+        } else {
+            response.add("result", resultToJson());
+        }
+        return response;
+    }
+}
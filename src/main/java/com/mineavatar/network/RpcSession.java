@@ -0,0 +1,624 @@
+package com.mineavatar.network;
+
+import com.google.gson.JsonObject;
+import com.mineavatar.MineAvatar;
+import com.mineavatar.MineAvatarConfig;
+import com.mineavatar.action.ActionContext;
+import com.mineavatar.action.ActionRegistry;
+import com.mineavatar.action.ActionResult;
+import com.mineavatar.action.ActionScheduler;
+import com.mineavatar.action.PendingAction;
+import net.minecraft.server.MinecraftServer;
+
+import javax.annotation.Nullable;
+import java.security.SecureRandom;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * JSON-RPC 2.0 session logic, shared by every transport.
+ * Receives decoded {@link RpcFrame}s on the transport's I/O thread and answers
+ * through its {@link RpcTransport}.
+ *
+ * A frame may carry a single request object or a batch array. A batch is dispatched
+ * within one tick and answered with one array frame, in request order.
+ * Requests are not run directly on the server thread; they go through {@link ActionScheduler}
+ * as {@link PendingAction}s so agent work stays within the per-tick budget. While queued, a
+ * request can be cancelled with the {@code $/cancelRequest} notification ({@code {"id": ...}}),
+ * and one that outlives its {@code deadline}/{@code timeoutMs} is answered with
+ * {@code DEADLINE_EXCEEDED} without running.
+ *
+ * Read-only perception methods ({@link ActionRegistry#isConcurrent}) skip the scheduler: they are
+ * answered right here on the I/O thread from the snapshot of the last completed tick.
+ *
+ * Results of requests that actually ran are kept in a {@link ReplayCache} by request ID; a
+ * request with a cached ID, method and params is answered from there without reaching the server
+ * thread (a fresh, non-resuming {@code auth} empties the cache),
+ * so a controller retrying on timeout cannot spawn or attack twice.
+ *
+ * {@code auth} returns a session token. When the connection drops, the session is detached
+ * rather than closed: queued requests keep running and their responses (and any other messages)
+ * are buffered in a bounded queue for {@code limits.sessionGraceSeconds}. A client that
+ * reconnects and sends {@code auth} with {@code "session": token} is reattached and receives
+ * the buffered messages right after the auth reply; its replay cache and rate limits carry over.
+ *
+ * Session-level methods (the {@code nav}, {@code perception}, {@code blocks} and {@code events}
+ * subscriptions, and {@code observation} layouts) are served by one {@link SessionHandler} per
+ * kind, looked up by method name: {@link NavHandler}, {@link PerceptionHandler},
+ * {@link BlocksHandler}, {@link WorldEventsHandler} and {@link ObservationHandler}.
+ *
+ * Each session is rate limited by a per-connection and a per-token {@link TokenBucket}
+ * (excess requests get {@code RATE_LIMITED}; only {@code $/cancelRequest} is exempt), and
+ * asks its transport to stop reading once too many of its requests are waiting for the server
+ * thread.
+ */
+public class RpcSession {
+
+    /** Shared by every session that authenticated with the same token. */
+    private static final Map<String, TokenBucket> TOKEN_BUCKETS = new ConcurrentHashMap<>();
+
+    /** Authenticated sessions by session token, attached or waiting to be resumed. */
+    private static final Map<String, RpcSession> SESSIONS = new ConcurrentHashMap<>();
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private static final String CANCEL_METHOD = "$/cancelRequest";
+    private static final String COMPRESSION_NONE = "none";
+    private static final String COMPRESSION_DEFLATE = "deflate";
+
+    /** Marker for a handled notification: nothing is sent back. */
+    static final RpcResponse NO_REPLY = RpcResponse.error(null, 0, "");
+
+    private final MinecraftServer server;
+    private final ActionRegistry registry;
+    private final ActionScheduler scheduler;
+    private final ActionContext context;
+    /** Null while detached. Guarded by {@link #outbox} for writes. */
+    @Nullable
+    private volatile RpcTransport transport;
+    /** Messages sent while detached, oldest first. */
+    private final ArrayDeque<Object> outbox = new ArrayDeque<>();
+    private int droppedWhileDetached;
+    private long detachedAtNanos;
+    private boolean closed;
+    @Nullable
+    private volatile String sessionId;
+    private final TokenBucket connectionBucket;
+    @Nullable
+    private TokenBucket tokenBucket;
+    private final AtomicInteger pendingRequests = new AtomicInteger();
+    private final AtomicBoolean readPaused = new AtomicBoolean();
+    /** Queued requests by ID, for {@code $/cancelRequest}. */
+    private final Map<String, PendingAction> pendingById = new ConcurrentHashMap<>();
+    @Nullable
+    private final ReplayCache replayCache;
+    private volatile boolean authenticated = false;
+    private final NavHandler nav = new NavHandler(this);
+    private final PerceptionHandler perception = new PerceptionHandler(this);
+    private final BlocksHandler blocks = new BlocksHandler(this);
+    private final WorldEventsHandler worldEvents = new WorldEventsHandler(this);
+    private final ObservationHandler observations = new ObservationHandler();
+    private final List<SessionHandler> handlers = List.of(nav, perception, blocks, worldEvents, observations);
+    /** Session-level methods of every handler, by method name. */
+    private final Map<String, SessionHandler.Method> sessionMethods = new HashMap<>();
+
+    public RpcSession(MinecraftServer server, ActionRegistry registry, ActionScheduler scheduler,
+                      RpcTransport transport) {
+        this.server = server;
+        this.registry = registry;
+        this.scheduler = scheduler;
+        this.context = new ActionContext(server);
+        this.transport = transport;
+        this.connectionBucket = new TokenBucket(MineAvatarConfig.CONNECTION_RATE_LIMIT.get(),
+                MineAvatarConfig.CONNECTION_RATE_BURST.get());
+        int replayEntries = MineAvatarConfig.REPLAY_CACHE_SIZE.get();
+        this.replayCache = replayEntries > 0
+                ? new ReplayCache(replayEntries, TimeUnit.SECONDS.toNanos(MineAvatarConfig.REPLAY_CACHE_TTL_SECONDS.get()))
+                : null;
+        handlers.forEach(handler -> sessionMethods.putAll(handler.methods()));
+    }
+
+    /**
+     * Handle one inbound frame. Must be called on the transport's I/O thread.
+     */
+    public void handleFrame(RpcFrame frame) {
+        if (frame.parseError() != null) {
+            send(RpcResponse.error(null, -32700, "Parse error: " + frame.parseError()));
+            return;
+        }
+
+        if (frame.batch()) {
+            handleBatch(frame.requests());
+            return;
+        }
+
+        RpcRequest request = frame.requests().get(0);
+        if ("auth".equals(request.method())) {
+            handleStandaloneAuth(request);
+            return;
+        }
+
+        RpcResponse immediate = screen(request, false);
+        if (immediate != null) {
+            if (immediate != NO_REPLY) send(immediate);
+            return;
+        }
+
+        Consumer<ActionResult> reply = result -> send(RpcResponse.of(request.id(), result));
+        if (replay(request, reply)) {
+            return;
+        }
+        PendingAction action = track(request, reply);
+        if (!scheduler.submit(List.of(action))) {
+            action.complete(queueFull());
+        }
+    }
+
+    /**
+     * Drop all session state. Queued requests are cancelled so the server thread does not
+     * run them for nobody.
+     */
+    public void close() {
+        synchronized (outbox) {
+            closed = true;
+            transport = null;
+            outbox.clear();
+        }
+        authenticated = false;
+        String id = sessionId;
+        if (id != null) SESSIONS.remove(id, this);
+        handlers.forEach(SessionHandler::close);
+        pendingById.values().forEach(PendingAction::cancel);
+        if (replayCache != null) replayCache.clear();
+    }
+
+    /**
+     * The given transport closed. Keep the session for resumption if it is resumable,
+     * otherwise close it. Does nothing if the session has already moved to another transport.
+     */
+    public void detach(RpcTransport from) {
+        boolean resumable = authenticated && sessionId != null && MineAvatarConfig.SESSION_GRACE_SECONDS.get() > 0;
+        synchronized (outbox) {
+            if (transport != from || closed) return;
+            if (resumable) {
+                transport = null;
+                detachedAtNanos = System.nanoTime();
+                return;
+            }
+        }
+        close();
+    }
+
+    /**
+     * Send a message to the client, or buffer it while detached.
+     * Safe to call from any thread; messages keep their order across a resume.
+     */
+    void send(Object message) {
+        synchronized (outbox) {
+            RpcTransport current = transport;
+            if (current != null) {
+                current.send(message);
+                return;
+            }
+            if (closed) return;
+            if (outbox.size() >= MineAvatarConfig.SESSION_BUFFER_SIZE.get()) {
+                outbox.poll();
+                droppedWhileDetached++;
+            }
+            outbox.add(message);
+        }
+    }
+
+    /**
+     * False while detached or while the client is not consuming what was already sent: periodic
+     * pushes wait rather than queue updates that would be stale when they arrive.
+     */
+    boolean acceptsPushes() {
+        RpcTransport current = transport;
+        return current != null && !current.isBacklogged();
+    }
+
+    /**
+     * Move this session onto a new transport: send the auth reply, switch encoding if asked,
+     * then flush what was buffered meanwhile — all before any newer message can slip in.
+     * If the session is still attached elsewhere (the old connection has not noticed it is
+     * dead yet), that transport is disconnected first, so only one transport ever sends for it.
+     * @return false if the session was closed in the meantime
+     */
+    private boolean attach(RpcTransport to, RpcResponse authReply) {
+        int dropped;
+        synchronized (outbox) {
+            if (closed) return false;
+            RpcTransport previous = transport;
+            transport = to;
+            if (previous != null && previous != to) {
+                previous.disconnect();
+                MineAvatar.LOGGER.info("[RPC] Session taken over from {}", previous.describe());
+            }
+            to.send(authReply);
+            applyNegotiated(to, authReply);
+            detachedAtNanos = 0;
+            dropped = droppedWhileDetached;
+            droppedWhileDetached = 0;
+            Object message;
+            while ((message = outbox.poll()) != null) {
+                to.send(message);
+            }
+        }
+        if (dropped > 0) blocks.resync(dropped);
+        to.readPauseChanged();
+        return true;
+    }
+
+    /**
+     * Close detached sessions whose grace window has passed. Called once per server tick.
+     */
+    public static void expireDetached() {
+        if (SESSIONS.isEmpty()) return;
+        long graceNanos = TimeUnit.SECONDS.toNanos(MineAvatarConfig.SESSION_GRACE_SECONDS.get());
+        long now = System.nanoTime();
+        for (RpcSession session : SESSIONS.values()) {
+            session.expireIfIdle(now, graceNanos);
+        }
+    }
+
+    private void expireIfIdle(long now, long graceNanos) {
+        synchronized (outbox) {
+            if (detachedAtNanos == 0 || now - detachedAtNanos <= graceNanos) return;
+            closed = true;
+        }
+        MineAvatar.LOGGER.info("[RPC] Session expired after {} s without reconnect",
+                TimeUnit.NANOSECONDS.toSeconds(graceNanos));
+        close();
+    }
+
+    /**
+     * Close every session (server shutdown).
+     */
+    public static void closeAll() {
+        for (RpcSession session : SESSIONS.values()) {
+            session.close();
+        }
+        SESSIONS.clear();
+    }
+
+    /**
+     * Handle a JSON-RPC batch. Protocol errors, {@code auth} and cancellations are answered
+     * in place; everything else is submitted as one scheduler group. The array reply is sent
+     * once every entry has an answer.
+     */
+    private void handleBatch(List<RpcRequest> batch) {
+        if (batch.isEmpty()) {
+            send(RpcResponse.error(null, -32600, "Empty batch"));
+            return;
+        }
+
+        int size = batch.size();
+        RpcResponse[] responses = new RpcResponse[size];
+        List<Integer> pendingSlots = new ArrayList<>();
+
+        for (int i = 0; i < size; i++) {
+            RpcResponse immediate = screen(batch.get(i), true);
+            if (immediate != null) {
+                responses[i] = immediate;
+            } else {
+                pendingSlots.add(i);
+            }
+        }
+
+        if (pendingSlots.isEmpty()) {
+            sendBatch(responses);
+            return;
+        }
+
+        AtomicInteger remaining = new AtomicInteger(pendingSlots.size());
+        List<PendingAction> group = new ArrayList<>(pendingSlots.size());
+        for (int slot : pendingSlots) {
+            RpcRequest request = batch.get(slot);
+            Consumer<ActionResult> reply = result -> {
+                responses[slot] = RpcResponse.of(request.id(), result);
+                if (remaining.decrementAndGet() == 0) {
+                    sendBatch(responses);
+                }
+            };
+            if (!replay(request, reply)) {
+                group.add(track(request, reply));
+            }
+        }
+        if (!group.isEmpty() && !scheduler.submit(group)) {
+            ActionResult rejected = queueFull();
+            group.forEach(action -> action.complete(rejected));
+        }
+    }
+
+    private void sendBatch(RpcResponse[] responses) {
+        List<RpcResponse> replies = new ArrayList<>(responses.length);
+        for (RpcResponse response : responses) {
+            if (response != NO_REPLY) replies.add(response);
+        }
+        if (!replies.isEmpty()) {
+            send(replies);
+        }
+    }
+
+    /**
+     * Answer a request from the replay cache if the same ID, method and params were seen before.
+     * @return true if the request was handled (possibly once the original completes)
+     */
+    private boolean replay(RpcRequest request, Consumer<ActionResult> reply) {
+        if (replayCache == null || request.id() == null) return false;
+        CompletableFuture<ActionResult> cached = replayCache.get(request.id(), request.method(), request.params());
+        if (cached == null) return false;
+        cached.thenAccept(reply);
+        return true;
+    }
+
+    /**
+     * Wrap a screened request in a {@link PendingAction} that counts towards the pending limit
+     * until it completes, and can be cancelled by ID meanwhile. Its result goes into the replay
+     * cache, unless the action never ran (rejected, expired, cancelled or superseded) — a retry
+     * of that should run for real.
+     */
+    private PendingAction track(RpcRequest request, Consumer<ActionResult> reply) {
+        String id = request.id();
+        CompletableFuture<ActionResult> cached = replayCache != null && id != null ? new CompletableFuture<>() : null;
+        if (cached != null) replayCache.put(id, request.method(), request.params(), cached);
+
+        PendingAction[] self = new PendingAction[1];
+        PendingAction action = new PendingAction(request.method(), request.params(), request.deadlineNanos(),
+                result -> {
+                    if (id != null) pendingById.remove(id, self[0]);
+                    adjustPending(-1);
+                    reply.accept(result);
+                    if (cached != null) {
+                        if (!self[0].wasStarted()) replayCache.remove(id, cached);
+                        cached.complete(result);
+                    }
+                });
+        self[0] = action;
+        adjustPending(1);
+        if (id != null) pendingById.put(id, action);
+        return action;
+    }
+
+    /**
+     * Answer a request that must not be dispatched: invalid entries, {@code auth} inside a batch,
+     * or anything before authentication, or over the rate limits. Session-level methods and
+     * snapshot reads are answered here too. Returns null when the request should go to the scheduler.
+     */
+    @Nullable
+    private RpcResponse screen(RpcRequest request, boolean inBatch) {
+        if (!request.isValid()) {
+            return RpcResponse.error(request.id(), -32600, request.invalidReason());
+        }
+
+        if ("auth".equals(request.method())) {
+            if (inBatch && request.params().has("session")) {
+                return RpcResponse.error(request.id(), -32602,
+                        "A session can only be resumed with a standalone auth request");
+            }
+            return authenticate(request, inBatch, false, transport);
+        }
+
+        if (!authenticated) {
+            return RpcResponse.error(request.id(), -32000, "Not authenticated. Send 'auth' first.");
+        }
+
+        if (CANCEL_METHOD.equals(request.method())) {
+            return cancel(request);
+        }
+
+        if (!connectionBucket.tryAcquire()) {
+            return RpcResponse.of(request.id(), rateLimited(connectionBucket));
+        }
+        if (tokenBucket != null && !tokenBucket.tryAcquire()) {
+            return RpcResponse.of(request.id(), rateLimited(tokenBucket));
+        }
+        SessionHandler.Method sessionMethod = sessionMethods.get(request.method());
+        if (sessionMethod != null) {
+            return sessionMethod.handle(request);
+        }
+        if (registry.isConcurrent(request.method())) {
+            return RpcResponse.of(request.id(),
+                    registry.dispatchConcurrent(request.method(), context, request.params()));
+        }
+        return null;
+    }
+
+    /**
+     * Track requests handed to the scheduler but not yet answered, pausing reads above
+     * {@code limits.maxPendingRequests} and resuming once half of them have drained.
+     */
+    private void adjustPending(int delta) {
+        int pending = pendingRequests.addAndGet(delta);
+        int limit = MineAvatarConfig.MAX_PENDING_REQUESTS.get();
+        if ((delta > 0 && pending >= limit && readPaused.compareAndSet(false, true))
+                || (delta < 0 && pending <= limit / 2 && readPaused.compareAndSet(true, false))) {
+            RpcTransport current = transport;
+            if (current != null) current.readPauseChanged();
+        }
+    }
+
+    /**
+     * True while too many of this session's requests are waiting for the server thread.
+     */
+    public boolean isReadPaused() {
+        return readPaused.get();
+    }
+
+    /**
+     * {@code $/cancelRequest}: cancel a queued request of this session. Requests that already
+     * ran are unaffected. Sent as a notification (no ID) it gets no reply of its own; the
+     * cancelled request is answered with {@code REQUEST_CANCELLED}.
+     */
+    private RpcResponse cancel(RpcRequest request) {
+        JsonObject params = request.params();
+        boolean cancelled = false;
+        if (params.has("id") && params.get("id").isJsonPrimitive()) {
+            PendingAction target = pendingById.get(params.get("id").getAsString());
+            cancelled = target != null && target.cancel();
+        }
+        if (request.id() == null) {
+            return NO_REPLY;
+        }
+        JsonObject data = new JsonObject();
+        data.addProperty("cancelled", cancelled);
+        return RpcResponse.of(request.id(), ActionResult.ok(data));
+    }
+
+    private static ActionResult rateLimited(TokenBucket bucket) {
+        return ActionResult.fail("RATE_LIMITED", "Request rate limit exceeded",
+                "Retry in " + Math.max(1, bucket.millisUntilNextPermit()) + " ms");
+    }
+
+    private static ActionResult queueFull() {
+        return ActionResult.fail("QUEUE_FULL", "Server action queue is full",
+                "Retry after a short delay or send fewer requests per tick");
+    }
+
+    /**
+     * A standalone auth may switch the wire protocol and enable compression. Its response is
+     * still encoded the way the request arrived; the switch applies to every later frame.
+     *
+     * It may also resume an earlier session. The auth reply then goes out first, then the
+     * messages that session buffered while detached, and the transport is rebound to it.
+     */
+    private void handleStandaloneAuth(RpcRequest request) {
+        RpcTransport via = transport;
+        if (via == null) return;
+        JsonObject params = request.params();
+
+        if (params.has("session") && params.get("session").isJsonPrimitive()) {
+            RpcSession previous = SESSIONS.get(params.get("session").getAsString());
+            if (previous != null && previous != this) {
+                RpcResponse response = previous.authenticate(request, false, true, via);
+                if (response.isError()) {
+                    via.send(response);
+                    return;
+                }
+                if (previous.attach(via, response)) {
+                    via.resumed(previous);
+                    close();
+                    MineAvatar.LOGGER.info("[RPC] Session resumed from {}", via.describe());
+                    return;
+                }
+                // Expired while we were looking at it: continue as a fresh session.
+            }
+        }
+
+        RpcResponse response = authenticate(request, false, false, via);
+        via.send(response);
+        applyNegotiated(via, response);
+    }
+
+    /**
+     * Switch the transport to the protocol and compression that a successful auth reply announced.
+     */
+    private static void applyNegotiated(RpcTransport via, RpcResponse authReply) {
+        if (authReply.isError()) return;
+        JsonObject result = authReply.resultToJson();
+        RpcProtocol protocol = RpcProtocol.fromWireName(result.get("protocol").getAsString());
+        if (protocol != null && protocol != RpcProtocol.JSON) {
+            via.switchProtocol(protocol);
+        }
+        if (COMPRESSION_DEFLATE.equals(result.get("compression").getAsString())) {
+            via.enableCompression();
+        }
+    }
+
+    private RpcResponse authenticate(RpcRequest request, boolean inBatch, boolean resuming,
+                                     @Nullable RpcTransport via) {
+        JsonObject params = request.params();
+        String token = params.has("token") ? params.get("token").getAsString() : "";
+        String expectedToken = MineAvatarConfig.WS_TOKEN.get();
+
+        if (!expectedToken.equals(token)) {
+            return RpcResponse.error(request.id(), -32001, "Invalid token");
+        }
+
+        RpcProtocol protocol = RpcProtocol.JSON;
+        if (params.has("protocol")) {
+            protocol = requestedProtocol(params);
+            if (protocol == null) {
+                return RpcResponse.error(request.id(), -32602,
+                        "Unknown protocol '" + params.get("protocol").getAsString() + "'");
+            }
+            if (inBatch && protocol != RpcProtocol.JSON) {
+                return RpcResponse.error(request.id(), -32602,
+                        "Protocol can only be negotiated with a standalone auth request");
+            }
+        }
+
+        boolean compress = false;
+        if (params.has("compression")) {
+            String compression = params.get("compression").getAsString();
+            if (!COMPRESSION_NONE.equals(compression) && !COMPRESSION_DEFLATE.equals(compression)) {
+                return RpcResponse.error(request.id(), -32602, "Unknown compression '" + compression + "'");
+            }
+            if (inBatch && COMPRESSION_DEFLATE.equals(compression)) {
+                return RpcResponse.error(request.id(), -32602,
+                        "Compression can only be negotiated with a standalone auth request");
+            }
+            // Transports that cannot compress (shared memory) quietly answer "none".
+            compress = COMPRESSION_DEFLATE.equals(compression) && via != null && via.supportsCompression();
+        }
+
+        authenticated = true;
+        if (!resuming && replayCache != null) {
+            // A fresh login may restart its ID counter; earlier results must not answer new requests.
+            replayCache.clear();
+        }
+        tokenBucket = TOKEN_BUCKETS.computeIfAbsent(token, t -> new TokenBucket(
+                MineAvatarConfig.TOKEN_RATE_LIMIT.get(), MineAvatarConfig.TOKEN_RATE_BURST.get()));
+        if (!resuming) {
+            MineAvatar.LOGGER.info("[RPC] Client authenticated from {} (protocol: {}, compression: {})",
+                    via != null ? via.describe() : "?", protocol.getWireName(), compress);
+        }
+
+        JsonObject result = new JsonObject();
+        result.addProperty("success", true);
+        result.addProperty("protocol", protocol.getWireName());
+        result.addProperty("compression", compress ? COMPRESSION_DEFLATE : COMPRESSION_NONE);
+        if (compress) {
+            result.addProperty("compressionThreshold", MineAvatarConfig.WS_COMPRESSION_THRESHOLD.get());
+        }
+        String id = sessionId;
+        if (id == null && MineAvatarConfig.SESSION_GRACE_SECONDS.get() > 0) {
+            byte[] bytes = new byte[16];
+            RANDOM.nextBytes(bytes);
+            id = HexFormat.of().formatHex(bytes);
+            sessionId = id;
+            SESSIONS.put(id, this);
+        }
+        if (id != null) {
+            result.addProperty("session", id);
+            result.addProperty("resumed", resuming);
+        }
+        if (resuming) {
+            synchronized (outbox) {
+                result.addProperty("buffered", outbox.size());
+                result.addProperty("dropped", droppedWhileDetached);
+            }
+        }
+        if (protocol == RpcProtocol.BINARY) {
+            result.add("methods", registry.methodTable());
+        }
+        return RpcResponse.of(request.id(), result);
+    }
+
+    @Nullable
+    private static RpcProtocol requestedProtocol(JsonObject params) {
+        return params.has("protocol")
+                ? RpcProtocol.fromWireName(params.get("protocol").getAsString())
+                : null;
+    }
+}
@@ -0,0 +1,62 @@
+package com.mineavatar.network;
+
+/**
+ * The connection-specific half of an {@link RpcSession}: how responses leave the server.
+ * Implemented by the Netty handler and by the shared-memory transport.
+ */
+public interface RpcTransport {
+
+    /**
+     * Send an {@link RpcMessage} or a {@code List} of them (one frame) and flush it.
+     * Safe to call from any thread; messages are delivered in call order.
+     */
+    void send(Object message);
+
+    /**
+     * Switch the wire protocol for everything sent or received after this call.
+     * Called on the transport's I/O thread, right after the auth reply was sent.
+     */
+    void switchProtocol(RpcProtocol protocol);
+
+    /**
+     * Whether this transport can compress frames ({@link #enableCompression}).
+     */
+    default boolean supportsCompression() { return false; }
+
+    /**
+     * Start per-frame compression (see {@link FrameCompressionCodec}) for everything sent or
+     * received after this call. Called on the transport's I/O thread, right after the auth reply.
+     */
+    default void enableCompression() {}
+
+    /**
+     * {@link RpcSession#isReadPaused()} changed: stop or resume reading new requests.
+     * Called from any thread; implementations re-read the session state rather than trusting
+     * call order. Transports may also pause on their own, e.g. above the write high watermark.
+     */
+    void readPauseChanged();
+
+    /**
+     * True while the client is not consuming what was already sent. Periodic pushes skip
+     * such a client rather than queue updates that would be stale when they arrive.
+     */
+    default boolean isBacklogged() { return false; }
+
+    /**
+     * The client resumed an earlier session: route every later frame to {@code session}
+     * instead of the one this transport was created with. Called on the transport's I/O thread.
+     */
+    void resumed(RpcSession session);
+
+    /**
+     * The session this transport served was resumed on another connection while this one still
+     * looked alive (e.g. a half-open socket): drop the connection and forget the session.
+     * Called from any thread, with the session's send lock held, so it must not block.
+     */
+    void disconnect();
+
+    /**
+     * Human-readable peer description for logs.
+     */
+    String describe();
+}
@@ -0,0 +1,58 @@
+package com.mineavatar.network;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.mineavatar.action.ActionResult;
+
+import javax.annotation.Nullable;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * One kind of session-level state of an {@link RpcSession} (a subscription kind, observation
+ * layouts) together with the methods that manage it. The session looks these methods up by name
+ * after authentication and rate limiting; they are answered on the I/O thread without going
+ * through the scheduler.
+ */
+interface SessionHandler {
+
+    /**
+     * A session-level method. Returns the response, or {@link RpcSession#NO_REPLY} for a
+     * notification.
+     */
+    @FunctionalInterface
+    interface Method {
+        RpcResponse handle(RpcRequest request);
+    }
+
+    /** The methods this handler serves, by method name. */
+    Map<String, Method> methods();
+
+    /** The session closed: drop all state and stop listening. */
+    void close();
+
+    /**
+     * A successful reply with {@code data}, or {@link RpcSession#NO_REPLY} if the request was a
+     * notification.
+     */
+    static RpcResponse reply(RpcRequest request, JsonObject data) {
+        return request.id() == null ? RpcSession.NO_REPLY : RpcResponse.of(request.id(), ActionResult.ok(data));
+    }
+
+    /**
+     * The optional {@code agents} parameter as a set (empty for all agents), or null if malformed.
+     */
+    @Nullable
+    static Set<String> agentNames(JsonObject params) {
+        Set<String> agents = new HashSet<>();
+        if (params.has("agents")) {
+            if (!params.get("agents").isJsonArray()) return null;
+            for (JsonElement name : params.getAsJsonArray("agents")) {
+                if (!name.isJsonPrimitive()) return null;
+                agents.add(name.getAsString());
+            }
+        }
+        return agents;
+    }
+}
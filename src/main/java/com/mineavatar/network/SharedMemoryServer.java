@@ -0,0 +1,473 @@
+package com.mineavatar.network;
+
+import com.mineavatar.MineAvatar;
+import com.mineavatar.MineAvatarConfig;
+import com.mineavatar.action.ActionRegistry;
+import com.mineavatar.action.ActionScheduler;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import net.minecraft.server.MinecraftServer;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileAttribute;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Memory-mapped file transport for a controller running on the same host.
+ * Bypasses the kernel network stack: requests and responses travel through two
+ * single-producer/single-consumer ring buffers in one shared file, and feed the same
+ * {@link RpcSession} (auth, batches, scheduler, codecs) as {@link JsonRpcHandler}.
+ * One controller at a time. The file is created fresh at start (owner read/write only, since
+ * the auth token travels through it), never through a symlink, and deleted at stop.
+ *
+ * <pre>
+ * File layout (header fields little-endian):
+ *   0     int   magic 'MAVS' (0x5356414D) — written last, once the file is ready
+ *   4     int   layout version (1)
+ *   8     int   ring capacity in bytes (power of two)
+ *   64    long  request ring head   (consumer: server)
+ *   128   long  request ring tail   (producer: client)
+ *   192   long  response ring head  (consumer: client)
+ *   256   long  response ring tail  (producer: server)
+ *   4096                request ring data  [capacity bytes]
+ *   4096+capacity       response ring data [capacity bytes]
+ * </pre>
+ * Head/tail are ever-increasing byte positions; the data index is {@code position & (capacity - 1)}.
+ * Producers publish with a release store of the tail, consumers free space with a release
+ * store of the head. Messages use the same framing as TCP — a 4-byte big-endian length
+ * followed by the payload — and may wrap around the end of the ring.
+ *
+ * Backpressure mirrors the TCP transport: messages waiting for the response ring are bounded by
+ * {@code sharedMemory.maxOutboundMessages} (oldest dropped beyond that), and while the ring is
+ * full or half that many are waiting, requests are not read and pushes are skipped.
+ *
+ * When idle, the poller spins {@code sharedMemory.spinsBeforePark} times and then parks, starting
+ * at {@code minParkMicros} and doubling up to {@code maxParkMicros}; outgoing messages wake it.
+ */
+public class SharedMemoryServer implements RpcTransport {
+
+    private static final int MAGIC = 0x5356414D;
+    private static final int VERSION = 1;
+    private static final int OFF_MAGIC = 0;
+    private static final int OFF_VERSION = 4;
+    private static final int OFF_CAPACITY = 8;
+    private static final int OFF_REQ_HEAD = 64;
+    private static final int OFF_REQ_TAIL = 128;
+    private static final int OFF_RESP_HEAD = 192;
+    private static final int OFF_RESP_TAIL = 256;
+    private static final int DATA_OFFSET = 4096;
+
+    private static final VarHandle LONGS =
+            MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final VarHandle INTS =
+            MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private final String path;
+    private final int capacity;
+    private final Queue<Outbound> outbound = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger outboundSize = new AtomicInteger();
+    private final int maxOutbound = MineAvatarConfig.SHM_MAX_OUTBOUND.get();
+    private long droppedOutbound;
+    private volatile boolean resetRequested;
+
+    private MappedByteBuffer buffer;
+    private MinecraftServer server;
+    private ActionRegistry registry;
+    private ActionScheduler scheduler;
+    private Ring requests;
+    private Ring responses;
+    private volatile RpcSession session;
+    private volatile RpcCodec codec = JsonRpcCodec.INSTANCE;
+    @Nullable
+    private ByteBuf pendingWrite;
+    /** The response ring was full on the last write attempt. */
+    private volatile boolean responsesFull;
+    private volatile boolean running;
+    /** Identity of the file {@link #start} created, so {@link #stop} never deletes another one. */
+    @Nullable
+    private Object createdFileKey;
+    private Thread pollerThread;
+
+    /** An outbound message together with the codec that was current when it was sent. */
+    private record Outbound(Object message, RpcCodec codec) {}
+
+    public SharedMemoryServer(String path, int ringBytes) {
+        this.path = path;
+        this.capacity = Integer.highestOneBit(Math.max(ringBytes - 1, 1)) << 1;
+    }
+
+    public void start(MinecraftServer server, ActionRegistry registry, ActionScheduler scheduler) {
+        Path file = Path.of(path);
+        if (!removeStaleFile(file)) return;
+        long size = DATA_OFFSET + 2L * capacity;
+        // Created fresh and owner-only: the auth token passes through the request ring.
+        try (FileChannel channel = FileChannel.open(file, Set.of(StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE, LinkOption.NOFOLLOW_LINKS), ownerOnly())) {
+            channel.write(ByteBuffer.allocate(1), size - 1);
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            createdFileKey = Files.readAttributes(file, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS).fileKey();
+        } catch (IOException | UnsupportedOperationException e) {
+            MineAvatar.LOGGER.error("[SHM] Failed to create shared memory file {}", path, e);
+            buffer = null;
+            return;
+        }
+
+        INTS.setRelease(buffer, OFF_MAGIC, 0);
+        INTS.set(buffer, OFF_VERSION, VERSION);
+        INTS.set(buffer, OFF_CAPACITY, capacity);
+        LONGS.set(buffer, OFF_REQ_HEAD, 0L);
+        LONGS.set(buffer, OFF_REQ_TAIL, 0L);
+        LONGS.set(buffer, OFF_RESP_HEAD, 0L);
+        LONGS.set(buffer, OFF_RESP_TAIL, 0L);
+        requests = new Ring(DATA_OFFSET, OFF_REQ_HEAD, OFF_REQ_TAIL);
+        responses = new Ring(DATA_OFFSET + capacity, OFF_RESP_HEAD, OFF_RESP_TAIL);
+        INTS.setRelease(buffer, OFF_MAGIC, MAGIC);
+
+        this.server = server;
+        this.registry = registry;
+        this.scheduler = scheduler;
+        session = new RpcSession(server, registry, scheduler, this);
+        running = true;
+        pollerThread = new Thread(this::pollLoop, "MineAvatar SHM Poller");
+        pollerThread.setDaemon(true);
+        pollerThread.start();
+        MineAvatar.LOGGER.info("[SHM] Shared memory transport started at {} ({} bytes per ring)", path, capacity);
+    }
+
+    public void stop() {
+        running = false;
+        if (pollerThread != null) {
+            LockSupport.unpark(pollerThread);
+            try {
+                pollerThread.join(1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            pollerThread = null;
+        }
+        if (session != null) {
+            session.close();
+            session = null;
+        }
+        if (buffer != null) {
+            INTS.setRelease(buffer, OFF_MAGIC, 0);
+            buffer = null;
+            deleteCreatedFile();
+        }
+        releasePending();
+        MineAvatar.LOGGER.info("[SHM] Shared memory transport stopped");
+    }
+
+    /**
+     * Delete a regular file left at the path by an unclean shutdown.
+     * @return false if something else is there (a directory, symlink, device...) or it could not be removed
+     */
+    private boolean removeStaleFile(Path file) {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class,
+                    LinkOption.NOFOLLOW_LINKS);
+            if (!attributes.isRegularFile()) {
+                MineAvatar.LOGGER.error("[SHM] {} exists and is not a regular file; shared memory transport disabled", path);
+                return false;
+            }
+            Files.delete(file);
+            MineAvatar.LOGGER.info("[SHM] Removed stale shared memory file {}", path);
+        } catch (NoSuchFileException e) {
+            // Nothing to remove
+        } catch (IOException e) {
+            MineAvatar.LOGGER.error("[SHM] Could not remove stale shared memory file {}", path, e);
+            return false;
+        }
+        return true;
+    }
+
+    /** Read/write for the owner only, where the file system has POSIX permissions. */
+    private static FileAttribute<?>[] ownerOnly() {
+        if (!FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+            return new FileAttribute<?>[0];
+        }
+        return new FileAttribute<?>[] {PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------"))};
+    }
+
+    /** Delete the file {@link #start} created, unless something else has replaced it since. */
+    private void deleteCreatedFile() {
+        Path file = Path.of(path);
+        try {
+            Object key = Files.readAttributes(file, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS).fileKey();
+            if (createdFileKey != null && createdFileKey.equals(key)) {
+                Files.delete(file);
+            } else {
+                MineAvatar.LOGGER.warn("[SHM] {} was replaced while the transport ran; not deleting it", path);
+            }
+        } catch (NoSuchFileException e) {
+            // Already gone
+        } catch (IOException e) {
+            MineAvatar.LOGGER.warn("[SHM] Could not delete shared memory file {}", path, e);
+        }
+        createdFileKey = null;
+    }
+
+    // ── Poller ──────────────────────────────────────────────────────
+
+    /**
+     * The only thread that touches the rings on the server side: it is the single consumer
+     * of the request ring and the single producer of the response ring.
+     */
+    private void pollLoop() {
+        int spinsBeforePark = MineAvatarConfig.SHM_SPINS_BEFORE_PARK.get();
+        long minParkNanos = MineAvatarConfig.SHM_MIN_PARK_MICROS.get() * 1000L;
+        long maxParkNanos = Math.max(minParkNanos, MineAvatarConfig.SHM_MAX_PARK_MICROS.get() * 1000L);
+        int idleSpins = 0;
+        long parkNanos = minParkNanos;
+        while (running) {
+            boolean worked;
+            if (resetRequested) {
+                // The session moved to another transport: start over with a fresh one.
+                resetRequested = false;
+                requests.discardAll();
+                releasePending();
+                codec = JsonRpcCodec.INSTANCE;
+                session = new RpcSession(server, registry, scheduler, this);
+            }
+            try {
+                worked = drainOutbound() | readRequests();
+            } catch (RuntimeException e) {
+                // A corrupt request stream cannot be resynchronized: drop it and require a fresh auth
+                // (which may resume the old session).
+                MineAvatar.LOGGER.error("[SHM] Transport error, resetting session", e);
+                requests.discardAll();
+                session.detach(this);
+                codec = JsonRpcCodec.INSTANCE;
+                session = new RpcSession(server, registry, scheduler, this);
+                worked = false;
+            }
+            if (worked) {
+                idleSpins = 0;
+                parkNanos = minParkNanos;
+            } else if (++idleSpins < spinsBeforePark) {
+                Thread.onSpinWait();
+            } else {
+                LockSupport.parkNanos(parkNanos);
+                parkNanos = Math.min(parkNanos * 2, maxParkNanos);
+            }
+        }
+    }
+
+    /**
+     * Read requests unless the session paused reads or the client is not draining responses
+     * (like autoRead following {@code isWritable()} on TCP).
+     */
+    private boolean readRequests() {
+        boolean worked = false;
+        byte[] payload;
+        while (!session.isReadPaused() && !isBacklogged() && (payload = requests.tryRead()) != null) {
+            ByteBuf frame = Unpooled.wrappedBuffer(payload);
+            session.handleFrame(codec.decode(frame));
+            worked = true;
+        }
+        return worked;
+    }
+
+    @SuppressWarnings("unchecked")
+    private boolean drainOutbound() {
+        boolean worked = false;
+        while (true) {
+            if (pendingWrite == null) {
+                Outbound next = outbound.poll();
+                if (next == null) return worked;
+                outboundSize.decrementAndGet();
+                ByteBuf encoded = Unpooled.buffer();
+                if (next.message() instanceof RpcMessage message) {
+                    next.codec().encode(message, encoded);
+                } else {
+                    next.codec().encodeBatch((List<RpcMessage>) next.message(), encoded);
+                }
+                if (encoded.readableBytes() > capacity - 4) {
+                    MineAvatar.LOGGER.warn("[SHM] Dropping {}-byte response: larger than the response ring",
+                            encoded.readableBytes());
+                    encoded.release();
+                    continue;
+                }
+                pendingWrite = encoded;
+            }
+            if (!responses.tryWrite(pendingWrite)) {
+                // Client is not consuming; keep the message and retry on the next pass.
+                responsesFull = true;
+                return worked;
+            }
+            responsesFull = false;
+            pendingWrite.release();
+            pendingWrite = null;
+            worked = true;
+        }
+    }
+
+    private void releasePending() {
+        if (pendingWrite != null) {
+            pendingWrite.release();
+            pendingWrite = null;
+        }
+        outbound.clear();
+        outboundSize.set(0);
+    }
+
+    // ── RpcTransport ────────────────────────────────────────────────
+
+    @Override
+    public void send(Object message) {
+        outbound.add(new Outbound(message, codec));
+        if (outboundSize.incrementAndGet() > maxOutbound && outbound.poll() != null) {
+            outboundSize.decrementAndGet();
+            synchronized (outbound) {
+                if (droppedOutbound++ % 1000 == 0) {
+                    MineAvatar.LOGGER.warn("[SHM] Controller is not draining responses; dropped {} message(s) so far",
+                            droppedOutbound);
+                }
+            }
+        }
+        Thread poller = pollerThread;
+        if (poller != null) LockSupport.unpark(poller);
+    }
+
+    @Override
+    public void switchProtocol(RpcProtocol protocol) {
+        codec = switch (protocol) {
+            case JSON -> JsonRpcCodec.INSTANCE;
+            case BINARY -> new BinaryRpcCodec(registry);
+        };
+    }
+
+    @Override
+    public void readPauseChanged() {
+        Thread poller = pollerThread;
+        if (poller != null) LockSupport.unpark(poller);
+    }
+
+    @Override
+    public boolean isBacklogged() {
+        return responsesFull || outboundSize.get() > maxOutbound / 2;
+    }
+
+    @Override
+    public void resumed(RpcSession session) {
+        this.session = session;
+    }
+
+    @Override
+    public void disconnect() {
+        resetRequested = true;
+        Thread poller = pollerThread;
+        if (poller != null) LockSupport.unpark(poller);
+    }
+
+    @Override
+    public String describe() {
+        return "shm:" + path;
+    }
+
+    // ── Ring buffer ─────────────────────────────────────────────────
+
+    /**
+     * One SPSC ring inside the mapped file. The server side is always either the
+     * consumer or the producer of a given ring, never both.
+     */
+    private final class Ring {
+        private final int dataOffset;
+        private final int headOffset;
+        private final int tailOffset;
+
+        Ring(int dataOffset, int headOffset, int tailOffset) {
+            this.dataOffset = dataOffset;
+            this.headOffset = headOffset;
+            this.tailOffset = tailOffset;
+        }
+
+        /**
+         * Consumer side: copy out the next complete message, or null if none is published.
+         */
+        @Nullable
+        byte[] tryRead() {
+            long tail = (long) LONGS.getAcquire(buffer, tailOffset);
+            long head = (long) LONGS.get(buffer, headOffset);
+            if (tail - head < 4) return null;
+
+            byte[] prefix = new byte[4];
+            copyOut(head, prefix);
+            int length = ((prefix[0] & 0xFF) << 24) | ((prefix[1] & 0xFF) << 16)
+                    | ((prefix[2] & 0xFF) << 8) | (prefix[3] & 0xFF);
+            if (length < 0 || length > MineAvatarConfig.WS_MAX_FRAME_BYTES.get() || length > capacity - 4) {
+                throw new IllegalStateException("Invalid frame length " + length + " in request ring");
+            }
+            if (tail - head < 4L + length) return null;
+
+            byte[] payload = new byte[length];
+            copyOut(head + 4, payload);
+            LONGS.setRelease(buffer, headOffset, head + 4 + length);
+            return payload;
+        }
+
+        /**
+         * Producer side: publish one length-prefixed message.
+         * @return false if there is not enough free space yet
+         */
+        boolean tryWrite(ByteBuf payload) {
+            int length = payload.readableBytes();
+            long head = (long) LONGS.getAcquire(buffer, headOffset);
+            long tail = (long) LONGS.get(buffer, tailOffset);
+            if (capacity - (tail - head) < 4L + length) return false;
+
+            byte[] prefix = {(byte) (length >>> 24), (byte) (length >>> 16), (byte) (length >>> 8), (byte) length};
+            copyIn(tail, prefix);
+            byte[] bytes = new byte[length];
+            payload.getBytes(payload.readerIndex(), bytes);
+            copyIn(tail + 4, bytes);
+            LONGS.setRelease(buffer, tailOffset, tail + 4 + length);
+            return true;
+        }
+
+        /**
+         * Consumer side: skip everything published so far.
+         */
+        void discardAll() {
+            LONGS.setRelease(buffer, headOffset, (long) LONGS.getAcquire(buffer, tailOffset));
+        }
+
+        private void copyOut(long position, byte[] dst) {
+            int index = (int) (position & (capacity - 1));
+            int first = Math.min(dst.length, capacity - index);
+            buffer.get(dataOffset + index, dst, 0, first);
+            if (first < dst.length) {
+                buffer.get(dataOffset, dst, first, dst.length - first);
+            }
+        }
+
+        private void copyIn(long position, byte[] src) {
+            int index = (int) (position & (capacity - 1));
+            int first = Math.min(src.length, capacity - index);
+            buffer.put(dataOffset + index, src, 0, first);
+            if (first < src.length) {
+                buffer.put(dataOffset, src, first, src.length - first);
+            }
+        }
+    }
+}
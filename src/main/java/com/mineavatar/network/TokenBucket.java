@@ -0,0 +1,47 @@
+package com.mineavatar.network;
+
+/**
+ * Classic token bucket: refills at {@code ratePerSecond}, holds at most {@code burst} permits.
+ * A rate of 0 disables limiting.
+ */
+public class TokenBucket {
+
+    private final double ratePerNano;
+    private final double burst;
+    private double tokens;
+    private long lastRefill;
+
+    public TokenBucket(double ratePerSecond, double burst) {
+        this.ratePerNano = ratePerSecond / 1_000_000_000.0;
+        this.burst = Math.max(burst, 1.0);
+        this.tokens = this.burst;
+        this.lastRefill = System.nanoTime();
+    }
+
+    public boolean isUnlimited() {
+        return ratePerNano <= 0;
+    }
+
+    /**
+     * Take one permit if available. Safe to call from any thread.
+     */
+    public synchronized boolean tryAcquire() {
+        if (isUnlimited()) return true;
+        long now = System.nanoTime();
+        tokens = Math.min(burst, tokens + (now - lastRefill) * ratePerNano);
+        lastRefill = now;
+        if (tokens >= 1.0) {
+            tokens -= 1.0;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Milliseconds until the next permit is available (0 if one is available now).
+     */
+    public synchronized long millisUntilNextPermit() {
+        if (isUnlimited() || tokens >= 1.0) return 0;
+        return (long) Math.ceil((1.0 - tokens) / ratePerNano / 1_000_000.0);
+    }
+}
@@ -0,0 +1,145 @@
+package com.mineavatar.network;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.mineavatar.MineAvatarConfig;
+import com.mineavatar.event.AgentEvent;
+import com.mineavatar.event.AgentEventHub;
+import com.mineavatar.event.AgentEventListener;
+import com.mineavatar.event.EventRingBuffer;
+import com.mineavatar.event.WorldEvents;
+
+import javax.annotation.Nullable;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * {@code events.subscribe} ({@code agents}, {@code types}) forwards the {@link WorldEvents}
+ * (hurt, death, chat, pickup, owner join/leave) that pass the filter. They are collected in a
+ * bounded per-session {@link EventRingBuffer} and flushed once per tick as one
+ * {@code world.events} notification while the client keeps up; when the ring overflows, the
+ * oldest events are dropped and the next notification reports how many. {@code events.unsubscribe}
+ * stops them.
+ */
+final class WorldEventsHandler implements SessionHandler {
+
+    private static final String SUBSCRIBE_METHOD = "events.subscribe";
+    private static final String UNSUBSCRIBE_METHOD = "events.unsubscribe";
+    private static final String EVENTS_METHOD = "world.events";
+
+    /** Agents and event types of events.subscribe; empty sets match everything. */
+    private record Filter(Set<String> agents, Set<String> types) {
+        boolean matches(AgentEvent event) {
+            return event.type().startsWith(WorldEvents.PREFIX)
+                    && (types.isEmpty() || types.contains(event.type()))
+                    && (agents.isEmpty() || (event.agent() != null && agents.contains(event.agent())));
+        }
+    }
+
+    private final RpcSession session;
+    /** Null when not subscribed. */
+    @Nullable
+    private volatile Filter filter;
+    private final EventRingBuffer buffer = new EventRingBuffer(MineAvatarConfig.EVENT_BUFFER_SIZE.get());
+    private final AgentEventListener listener = this::bufferEvents;
+
+    WorldEventsHandler(RpcSession session) {
+        this.session = session;
+    }
+
+    @Override
+    public Map<String, Method> methods() {
+        return Map.of(SUBSCRIBE_METHOD, this::subscribe, UNSUBSCRIBE_METHOD, this::unsubscribe);
+    }
+
+    @Override
+    public void close() {
+        filter = null;
+        AgentEventHub.get().removeListener(listener);
+        buffer.clear();
+    }
+
+    /**
+     * {@code events.subscribe}: forward the world.* events of the listed agents (all agents if
+     * {@code agents} is absent or empty) and types (all if {@code types} is absent or empty).
+     * A second call replaces the filter; events already buffered are kept.
+     */
+    private RpcResponse subscribe(RpcRequest request) {
+        JsonObject params = request.params();
+        Set<String> agents = SessionHandler.agentNames(params);
+        if (agents == null) {
+            return RpcResponse.error(request.id(), -32602, "'agents' must be an array of agent names");
+        }
+        Set<String> types = new HashSet<>();
+        if (params.has("types")) {
+            if (!params.get("types").isJsonArray()) {
+                return RpcResponse.error(request.id(), -32602, "'types' must be an array of event types");
+            }
+            for (JsonElement type : params.getAsJsonArray("types")) {
+                String name = type.isJsonPrimitive() ? type.getAsString() : "";
+                if (!WorldEvents.TYPES.contains(name)) {
+                    return RpcResponse.error(request.id(), -32602, "Unknown event type '" + name
+                            + "' (available: " + String.join(", ", new TreeSet<>(WorldEvents.TYPES)) + ")");
+                }
+                types.add(name);
+            }
+        }
+
+        boolean wasSubscribed = filter != null;
+        filter = new Filter(Set.copyOf(agents), Set.copyOf(types));
+        if (!wasSubscribed) {
+            AgentEventHub.get().addListener(listener);
+        }
+        JsonObject data = new JsonObject();
+        data.addProperty("subscribed", true);
+        data.addProperty("agents", agents.isEmpty() ? "all" : String.join(",", agents));
+        data.addProperty("types", types.isEmpty() ? "all" : String.join(",", types));
+        data.addProperty("bufferSize", MineAvatarConfig.EVENT_BUFFER_SIZE.get());
+        return SessionHandler.reply(request, data);
+    }
+
+    private RpcResponse unsubscribe(RpcRequest request) {
+        boolean wasSubscribed = filter != null;
+        close();
+        JsonObject data = new JsonObject();
+        data.addProperty("unsubscribed", wasSubscribed);
+        return SessionHandler.reply(request, data);
+    }
+
+    /**
+     * Called on the server thread every tick. Buffers the matching events, then sends everything
+     * buffered as one notification unless the client is detached or backlogged; then it stays in
+     * the ring, which drops (and counts) the oldest events once full.
+     */
+    private void bufferEvents(long tick, List<AgentEvent> events) {
+        Filter current = filter;
+        if (current == null) return;
+        for (AgentEvent event : events) {
+            if (!current.matches(event)) continue;
+            // Buffered events may go out ticks later; each keeps the tick it happened in.
+            JsonObject data = event.data().deepCopy();
+            data.addProperty("tick", tick);
+            buffer.add(new AgentEvent(event.type(), event.agent(), data));
+        }
+        if (buffer.isEmpty() || !session.acceptsPushes()) return;
+
+        EventRingBuffer.Batch batch = buffer.drain();
+        JsonArray list = new JsonArray();
+        for (AgentEvent event : batch.events()) {
+            JsonObject entry = new JsonObject();
+            entry.addProperty("type", event.type());
+            entry.addProperty("agent", event.agent());
+            event.data().entrySet().forEach(field -> entry.add(field.getKey(), field.getValue()));
+            list.add(entry);
+        }
+        JsonObject params = new JsonObject();
+        params.addProperty("tick", tick);
+        params.add("events", list);
+        params.addProperty("dropped", batch.dropped());
+        session.send(new RpcNotification(EVENTS_METHOD, params));
+    }
+}
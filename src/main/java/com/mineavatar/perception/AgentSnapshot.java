@@ -0,0 +1,130 @@
+package com.mineavatar.perception;
+
+import com.mineavatar.entity.AgentEntity;
+import net.minecraft.resources.ResourceKey;
+import net.minecraft.world.entity.Entity;
+import net.minecraft.world.level.Level;
+
+import javax.annotation.Nullable;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Immutable copy of the observable state of one {@link AgentEntity} at the end of a server tick.
+ * Safe to read from any thread.
+ *
+ * {@link #versions()} records, per {@link PerceptionField}, the last tick at which that field's
+ * reported value changed, so a client holding the state of tick N can be sent just the difference.
+ */
+public record AgentSnapshot(
+        long tick,
+        String name,
+        String uuid,
+        ResourceKey<Level> dimension,
+        double x, double y, double z,
+        float yaw, float pitch,
+        float health, float maxHealth,
+        boolean alive,
+        boolean navigating,
+        boolean onGround,
+        boolean inWater,
+        @Nullable String lookTarget,
+        Versions versions
+) {
+
+    /**
+     * Copy the agent's current state. Server thread only.
+     * @param previous the same agent's snapshot from the previous capture, if any
+     */
+    public static AgentSnapshot capture(AgentEntity agent, long tick, @Nullable AgentSnapshot previous) {
+        Entity lookTarget = agent.getLookTarget();
+        AgentSnapshot current = new AgentSnapshot(
+                tick,
+                agent.getAgentName(),
+                agent.getStringUUID(),
+                agent.level().dimension(),
+                agent.getX(), agent.getY(), agent.getZ(),
+                agent.getYRot(), agent.getXRot(),
+                agent.getHealth(), agent.getMaxHealth(),
+                agent.isAlive(),
+                agent.getNavigation().isInProgress(),
+                agent.onGround(),
+                agent.isInWater(),
+                lookTarget != null ? lookTarget.getName().getString() : null,
+                Versions.NONE);
+        Versions versions = previous != null && previous.uuid.equals(current.uuid)
+                ? previous.versions.update(previous, current, tick)
+                : Versions.all(tick);
+        return current.withVersions(versions);
+    }
+
+    private AgentSnapshot withVersions(Versions versions) {
+        return new AgentSnapshot(tick, name, uuid, dimension, x, y, z, yaw, pitch, health, maxHealth,
+                alive, navigating, onGround, inWater, lookTarget, versions);
+    }
+
+    /**
+     * Whether a field reports the same value in both snapshots. Position is compared at
+     * the 0.1-block precision it is reported with, so sub-pixel drift is not a change.
+     */
+    private static boolean sameValue(PerceptionField field, AgentSnapshot a, AgentSnapshot b) {
+        return switch (field) {
+            case NAME -> a.name.equals(b.name);
+            case POSITION -> Math.round(a.x * 10.0) == Math.round(b.x * 10.0)
+                    && Math.round(a.y * 10.0) == Math.round(b.y * 10.0)
+                    && Math.round(a.z * 10.0) == Math.round(b.z * 10.0);
+            case HEALTH -> a.health == b.health;
+            case MAX_HEALTH -> a.maxHealth == b.maxHealth;
+            case YAW -> a.yaw == b.yaw;
+            case PITCH -> a.pitch == b.pitch;
+            case NAVIGATING -> a.navigating == b.navigating;
+            case ON_GROUND -> a.onGround == b.onGround;
+            case IN_WATER -> a.inWater == b.inWater;
+            case LOOK_TARGET -> Objects.equals(a.lookTarget, b.lookTarget);
+            case UUID -> a.uuid.equals(b.uuid);
+        };
+    }
+
+    /**
+     * Last-change tick per {@link PerceptionField}. Immutable.
+     */
+    public static final class Versions {
+
+        static final Versions NONE = new Versions(new long[PerceptionField.values().length], -1);
+
+        private final long[] changedAt;
+        private final long latest;
+
+        private Versions(long[] changedAt, long latest) {
+            this.changedAt = changedAt;
+            this.latest = latest;
+        }
+
+        static Versions all(long tick) {
+            long[] changedAt = new long[PerceptionField.values().length];
+            Arrays.fill(changedAt, tick);
+            return new Versions(changedAt, tick);
+        }
+
+        Versions update(AgentSnapshot previous, AgentSnapshot current, long tick) {
+            long[] next = null;
+            for (PerceptionField field : PerceptionField.values()) {
+                if (!sameValue(field, previous, current)) {
+                    if (next == null) next = changedAt.clone();
+                    next[field.ordinal()] = tick;
+                }
+            }
+            return next != null ? new Versions(next, tick) : this;
+        }
+
+        /** Tick at which the field last changed. */
+        public long changedAt(PerceptionField field) {
+            return changedAt[field.ordinal()];
+        }
+
+        /** Tick at which any field last changed. */
+        public long latest() {
+            return latest;
+        }
+    }
+}
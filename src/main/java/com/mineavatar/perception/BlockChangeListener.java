@@ -0,0 +1,20 @@
+package com.mineavatar.perception;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A subscriber of {@link BlockChangeTracker}: which surroundings it watches, and where the
+ * changes go. All methods are called on the server thread.
+ */
+public interface BlockChangeListener {
+
+    /** Agents whose surroundings are watched; empty for every agent. */
+    Set<String> watchedAgents();
+
+    /** Watch radius around each agent, in blocks. */
+    int watchRadius();
+
+    /** The changed sections of one tick that lie within the watched area. Never empty. */
+    void onBlockChanges(long tick, List<BlockChangeTracker.SectionChanges> changes);
+}
@@ -0,0 +1,169 @@
+package com.mineavatar.perception;
+
+import com.mineavatar.MineAvatar;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.SectionPos;
+import net.minecraft.resources.ResourceKey;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.level.Level;
+import net.minecraft.world.level.LevelAccessor;
+import net.minecraft.world.level.block.Block;
+import net.minecraft.world.level.block.state.BlockState;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Collects block changes near watched agents and hands them out once per tick, coalesced
+ * per chunk section.
+ *
+ * Changes are reported through {@link #blockChanged} (from block neighbor notifications and
+ * block game events) and only remembered if they fall into a watched section, so unwatched areas
+ * cost one hash lookup. At the end of the tick every changed position is read once, so a block
+ * that changed several times in a tick is reported once, with its final state. Each change is
+ * packed as {@code stateId << 12 | (y << 8 | z << 4 | x)}, with section-local coordinates
+ * (the YZX index of {@link BlockRegion}) and the global block state ID ({@link Block#getId}).
+ *
+ * Server thread only, except for adding and removing listeners.
+ */
+public class BlockChangeTracker {
+
+    private static final BlockChangeTracker INSTANCE = new BlockChangeTracker();
+
+    /** Changed blocks of one section in one tick. */
+    public record SectionChanges(ResourceKey<Level> dimension, int x, int y, int z, long[] packed) {}
+
+    private final CopyOnWriteArrayList<BlockChangeListener> listeners = new CopyOnWriteArrayList<>();
+    /** Sections any listener watches, per dimension; recomputed at the end of every tick. */
+    private Map<ResourceKey<Level>, Set<Long>> watched = Map.of();
+    /** Changed positions of this tick, as section-local index bits per section. */
+    private final Map<ServerLevel, Map<Long, BitSet>> pending = new HashMap<>();
+
+    public static BlockChangeTracker get() {
+        return INSTANCE;
+    }
+
+    public void addListener(BlockChangeListener listener) {
+        listeners.addIfAbsent(listener);
+    }
+
+    public void removeListener(BlockChangeListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * The block at {@code pos} may have changed. Cheap for unwatched positions.
+     */
+    public void blockChanged(LevelAccessor level, BlockPos pos) {
+        if (watched.isEmpty() || !(level instanceof ServerLevel serverLevel)) return;
+        Set<Long> sections = watched.get(serverLevel.dimension());
+        if (sections == null) return;
+        long section = SectionPos.asLong(pos);
+        if (!sections.contains(section)) return;
+        pending.computeIfAbsent(serverLevel, l -> new HashMap<>())
+                .computeIfAbsent(section, s -> new BitSet(16 * 16 * 16))
+                .set(localIndex(pos));
+    }
+
+    private static int localIndex(BlockPos pos) {
+        return (pos.getY() & 15) << 8 | (pos.getZ() & 15) << 4 | (pos.getX() & 15);
+    }
+
+    /**
+     * Deliver this tick's changes and recompute the watched sections from the agents' positions
+     * in the latest {@link PerceptionSnapshots} frame. Called once per tick, after the capture.
+     */
+    public void flush(long tick) {
+        List<SectionChanges> changes = pending.isEmpty() ? List.of() : collectPending();
+        if (listeners.isEmpty()) {
+            watched = Map.of();
+            return;
+        }
+
+        PerceptionSnapshots.Frame frame = PerceptionSnapshots.get().current();
+        Map<ResourceKey<Level>, Set<Long>> nextWatched = new HashMap<>();
+        for (BlockChangeListener listener : listeners) {
+            Map<ResourceKey<Level>, Set<Long>> area = watchedArea(frame, listener);
+            area.forEach((dimension, sections) ->
+                    nextWatched.computeIfAbsent(dimension, d -> new HashSet<>()).addAll(sections));
+            if (changes.isEmpty()) continue;
+
+            List<SectionChanges> visible = new ArrayList<>();
+            for (SectionChanges change : changes) {
+                Set<Long> sections = area.get(change.dimension());
+                if (sections != null && sections.contains(SectionPos.asLong(change.x(), change.y(), change.z()))) {
+                    visible.add(change);
+                }
+            }
+            if (!visible.isEmpty()) {
+                try {
+                    listener.onBlockChanges(tick, visible);
+                } catch (Exception e) {
+                    MineAvatar.LOGGER.error("[Perception] Block change listener failed", e);
+                }
+            }
+        }
+        watched = nextWatched;
+    }
+
+    private List<SectionChanges> collectPending() {
+        List<SectionChanges> changes = new ArrayList<>();
+        BlockPos.MutableBlockPos pos = new BlockPos.MutableBlockPos();
+        pending.forEach((level, sections) -> sections.forEach((key, bits) -> {
+            int baseX = SectionPos.sectionToBlockCoord(SectionPos.x(key));
+            int baseY = SectionPos.sectionToBlockCoord(SectionPos.y(key));
+            int baseZ = SectionPos.sectionToBlockCoord(SectionPos.z(key));
+            long[] packed = new long[bits.cardinality()];
+            int n = 0;
+            for (int index = bits.nextSetBit(0); index >= 0; index = bits.nextSetBit(index + 1)) {
+                pos.set(baseX + (index & 15), baseY + (index >> 8), baseZ + (index >> 4 & 15));
+                BlockState state = level.getBlockState(pos);
+                packed[n++] = (long) Block.getId(state) << 12 | index;
+            }
+            changes.add(new SectionChanges(level.dimension(),
+                    SectionPos.x(key), SectionPos.y(key), SectionPos.z(key), packed));
+        }));
+        pending.clear();
+        return changes;
+    }
+
+    private static Map<ResourceKey<Level>, Set<Long>> watchedArea(PerceptionSnapshots.Frame frame,
+                                                                  BlockChangeListener listener) {
+        Set<String> agents = listener.watchedAgents();
+        int radius = listener.watchRadius();
+        Map<ResourceKey<Level>, Set<Long>> area = new HashMap<>();
+        for (AgentSnapshot agent : frame.agents()) {
+            if (!agent.alive() || (!agents.isEmpty() && !agents.contains(agent.name()))) continue;
+            Set<Long> sections = area.computeIfAbsent(agent.dimension(), d -> new HashSet<>());
+            int minX = SectionPos.blockToSectionCoord(agent.x() - radius);
+            int maxX = SectionPos.blockToSectionCoord(agent.x() + radius);
+            int minY = SectionPos.blockToSectionCoord(agent.y() - radius);
+            int maxY = SectionPos.blockToSectionCoord(agent.y() + radius);
+            int minZ = SectionPos.blockToSectionCoord(agent.z() - radius);
+            int maxZ = SectionPos.blockToSectionCoord(agent.z() + radius);
+            for (int x = minX; x <= maxX; x++) {
+                for (int y = minY; y <= maxY; y++) {
+                    for (int z = minZ; z <= maxZ; z++) {
+                        sections.add(SectionPos.asLong(x, y, z));
+                    }
+                }
+            }
+        }
+        return area;
+    }
+
+    /**
+     * Drop pending changes, watched sections and listeners (server shutdown).
+     */
+    public void clear() {
+        pending.clear();
+        watched = Map.of();
+        listeners.clear();
+    }
+}
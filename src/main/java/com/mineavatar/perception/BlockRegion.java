@@ -0,0 +1,223 @@
+package com.mineavatar.perception;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import net.minecraft.commands.arguments.blocks.BlockStateParser;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.SectionPos;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.level.ChunkPos;
+import net.minecraft.world.level.block.Blocks;
+import net.minecraft.world.level.block.state.BlockState;
+import net.minecraft.world.level.chunk.LevelChunk;
+import net.minecraft.world.level.chunk.LevelChunkSection;
+import net.minecraft.world.level.chunk.PalettedContainer;
+
+import javax.annotation.Nullable;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Block states of a cuboid, for {@code perception.region}.
+ *
+ * {@link #capture} runs on the server thread and only copies the paletted containers of the
+ * chunk sections the cuboid touches (sections that are all air are not even copied; unloaded
+ * chunks are never loaded). {@link #encode} then builds the payload on any thread:
+ * <ul>
+ *   <li>{@code palette}: block state strings, e.g. {@code minecraft:oak_log[axis=y]}</li>
+ *   <li>{@code sections}: one entry per non-air section with its section coordinates and either
+ *       {@code uniform} (a palette index, no block data) or {@code palette} (section palette as
+ *       indices into the response palette), {@code bits} and {@code offset} into {@code blocks}</li>
+ *   <li>{@code blocks}: for each non-uniform section, 4096 section-palette indices in YZX order
+ *       ({@code (y * 16 + z) * 16 + x}), packed {@code 64 / bits} per little-endian 64-bit word,
+ *       lowest bits first, never straddling words</li>
+ * </ul>
+ * Sections are whole, so the data usually extends past the requested cuboid; sections that are
+ * not listed are air ({@code airSections}) or in {@code unloadedChunks}.
+ *
+ * A captured region can also be read block by block ({@link #getBlockState}), which is what
+ * {@link RayCaster} does.
+ */
+public final class BlockRegion {
+
+    private static final int SECTION_VOLUME = 16 * 16 * 16;
+
+    private record Section(int x, int y, int z, PalettedContainer<BlockState> states) {}
+
+    private final BlockPos origin;
+    private final int sizeX;
+    private final int sizeY;
+    private final int sizeZ;
+    private final long tick;
+    private final List<Section> sections = new ArrayList<>();
+    /** The same containers by {@link SectionPos#asLong} key, for lookups. */
+    private final Map<Long, PalettedContainer<BlockState>> sectionsByKey = new HashMap<>();
+    private final Set<Long> unloadedChunkKeys = new HashSet<>();
+    private int minSectionX;
+    private int maxSectionX;
+    private int minSectionZ;
+    private int maxSectionZ;
+    private final JsonArray unloadedChunks = new JsonArray();
+    private int airSections;
+
+    private BlockRegion(BlockPos origin, int sizeX, int sizeY, int sizeZ, long tick) {
+        this.origin = origin;
+        this.sizeX = sizeX;
+        this.sizeY = sizeY;
+        this.sizeZ = sizeZ;
+        this.tick = tick;
+    }
+
+    /**
+     * Copy the sections covering {@code origin} .. {@code origin + size - 1}. Server thread only.
+     */
+    public static BlockRegion capture(ServerLevel level, BlockPos origin, int sizeX, int sizeY, int sizeZ, long tick) {
+        BlockRegion region = new BlockRegion(origin, sizeX, sizeY, sizeZ, tick);
+        int minX = SectionPos.blockToSectionCoord(origin.getX());
+        int maxX = SectionPos.blockToSectionCoord(origin.getX() + sizeX - 1);
+        int minY = Math.max(SectionPos.blockToSectionCoord(origin.getY()), level.getMinSection());
+        int maxY = Math.min(SectionPos.blockToSectionCoord(origin.getY() + sizeY - 1), level.getMaxSection() - 1);
+        int minZ = SectionPos.blockToSectionCoord(origin.getZ());
+        int maxZ = SectionPos.blockToSectionCoord(origin.getZ() + sizeZ - 1);
+        region.minSectionX = minX;
+        region.maxSectionX = maxX;
+        region.minSectionZ = minZ;
+        region.maxSectionZ = maxZ;
+
+        for (int cx = minX; cx <= maxX; cx++) {
+            for (int cz = minZ; cz <= maxZ; cz++) {
+                LevelChunk chunk = level.getChunkSource().getChunkNow(cx, cz);
+                if (chunk == null) {
+                    JsonArray pos = new JsonArray();
+                    pos.add(cx);
+                    pos.add(cz);
+                    region.unloadedChunks.add(pos);
+                    region.unloadedChunkKeys.add(ChunkPos.asLong(cx, cz));
+                    continue;
+                }
+                LevelChunkSection[] chunkSections = chunk.getSections();
+                for (int sy = minY; sy <= maxY; sy++) {
+                    LevelChunkSection section = chunkSections[level.getSectionIndexFromSectionY(sy)];
+                    if (section.hasOnlyAir()) {
+                        region.airSections++;
+                    } else {
+                        PalettedContainer<BlockState> states = section.getStates().copy();
+                        region.sections.add(new Section(cx, sy, cz, states));
+                        region.sectionsByKey.put(SectionPos.asLong(cx, sy, cz), states);
+                    }
+                }
+            }
+        }
+        return region;
+    }
+
+    /**
+     * The block at the given world position as captured: air for air sections and positions above
+     * or below the world, null for unloaded chunks and columns outside the captured sections.
+     * Safe on any thread.
+     */
+    @Nullable
+    public BlockState getBlockState(int x, int y, int z) {
+        int sx = SectionPos.blockToSectionCoord(x);
+        int sz = SectionPos.blockToSectionCoord(z);
+        if (sx < minSectionX || sx > maxSectionX || sz < minSectionZ || sz > maxSectionZ
+                || unloadedChunkKeys.contains(ChunkPos.asLong(sx, sz))) {
+            return null;
+        }
+        PalettedContainer<BlockState> states = sectionsByKey.get(
+                SectionPos.asLong(sx, SectionPos.blockToSectionCoord(y), sz));
+        return states != null ? states.get(x & 15, y & 15, z & 15) : Blocks.AIR.defaultBlockState();
+    }
+
+    public long getTick() {
+        return tick;
+    }
+
+    /** The JSON part of the payload and the packed block indices. */
+    public record Encoded(JsonObject data, byte[] blocks) {}
+
+    /**
+     * Build the palette and pack the block indices. Safe on any thread.
+     */
+    public Encoded encode() {
+        Map<BlockState, Integer> paletteIndex = new IdentityHashMap<>();
+        JsonArray palette = new JsonArray();
+        JsonArray sectionList = new JsonArray();
+        ByteArrayOutputStream blocks = new ByteArrayOutputStream();
+        int[] indices = new int[SECTION_VOLUME];
+
+        for (Section section : sections) {
+            // Section-local palette, as indices into the response palette
+            List<Integer> local = new ArrayList<>();
+            Map<BlockState, Integer> localIndex = new IdentityHashMap<>();
+            int[] next = {0};
+            section.states().getAll(state -> {
+                Integer index = localIndex.get(state);
+                if (index == null) {
+                    index = local.size();
+                    localIndex.put(state, index);
+                    local.add(paletteIndex.computeIfAbsent(state, s -> {
+                        palette.add(BlockStateParser.serialize(s));
+                        return palette.size() - 1;
+                    }));
+                }
+                indices[next[0]++] = index;
+            });
+
+            JsonObject entry = new JsonObject();
+            entry.addProperty("x", section.x());
+            entry.addProperty("y", section.y());
+            entry.addProperty("z", section.z());
+            if (local.size() == 1) {
+                entry.addProperty("uniform", local.get(0));
+            } else {
+                int bits = 32 - Integer.numberOfLeadingZeros(local.size() - 1);
+                JsonArray sectionPalette = new JsonArray();
+                local.forEach(sectionPalette::add);
+                entry.add("palette", sectionPalette);
+                entry.addProperty("bits", bits);
+                entry.addProperty("offset", blocks.size());
+                pack(indices, bits, blocks);
+            }
+            sectionList.add(entry);
+        }
+
+        JsonObject data = new JsonObject();
+        data.add("origin", vector(origin.getX(), origin.getY(), origin.getZ()));
+        data.add("size", vector(sizeX, sizeY, sizeZ));
+        data.add("palette", palette);
+        data.add("sections", sectionList);
+        data.addProperty("airSections", airSections);
+        data.add("unloadedChunks", unloadedChunks);
+        data.addProperty("tick", tick);
+        return new Encoded(data, blocks.toByteArray());
+    }
+
+    private static void pack(int[] indices, int bits, ByteArrayOutputStream out) {
+        int perWord = 64 / bits;
+        for (int start = 0; start < indices.length; start += perWord) {
+            long word = 0;
+            int end = Math.min(start + perWord, indices.length);
+            for (int i = start; i < end; i++) {
+                word |= (long) indices[i] << ((i - start) * bits);
+            }
+            for (int b = 0; b < 8; b++) {
+                out.write((int) (word >>> (b * 8)));
+            }
+        }
+    }
+
+    private static JsonObject vector(int x, int y, int z) {
+        JsonObject pos = new JsonObject();
+        pos.addProperty("x", x);
+        pos.addProperty("y", y);
+        pos.addProperty("z", z);
+        return pos;
+    }
+}
@@ -0,0 +1,167 @@
+package com.mineavatar.perception;
+
+import com.mineavatar.entity.AgentEntity;
+import net.minecraft.core.SectionPos;
+import net.minecraft.core.registries.BuiltInRegistries;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.entity.Entity;
+import net.minecraft.world.entity.LivingEntity;
+import net.minecraft.world.entity.item.ItemEntity;
+import net.minecraft.world.entity.player.Player;
+import net.minecraft.world.phys.AABB;
+import net.minecraft.world.phys.Vec3;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * Entity lookups around a point, for {@code perception.nearby}.
+ *
+ * The query box is split along the 16³ entity sections; each section is read once per tick
+ * with a section-sized AABB query and its entities are copied into immutable {@link Entry}s.
+ * Every later query in the same tick that touches that section reuses the copy, so many agents
+ * standing close together and asking every tick cost about one scan of their neighbourhood.
+ *
+ * Server thread only.
+ */
+public class NearbyEntities {
+
+    private static final NearbyEntities INSTANCE = new NearbyEntities();
+
+    /** Entities whose position lies in a section, as of {@link #cacheTick}. */
+    private final Map<ServerLevel, Map<Long, List<Entry>>> sections = new HashMap<>();
+    private long cacheTick = -1;
+
+    public static NearbyEntities get() {
+        return INSTANCE;
+    }
+
+    /**
+     * One entity as seen by a nearby query.
+     * @param category "agent", "player", "item", "hostile", "passive" or "other"
+     * @param health NaN for non-living entities
+     */
+    public record Entry(int id, String uuid, String type, String category, String name,
+                        double x, double y, double z, float health) {
+
+        static Entry of(Entity entity) {
+            return new Entry(
+                    entity.getId(),
+                    entity.getStringUUID(),
+                    BuiltInRegistries.ENTITY_TYPE.getKey(entity.getType()).toString(),
+                    categoryOf(entity),
+                    entity.getName().getString(),
+                    entity.getX(), entity.getY(), entity.getZ(),
+                    entity instanceof LivingEntity living ? living.getHealth() : Float.NaN);
+        }
+
+        public double distanceToSqr(Vec3 point) {
+            double dx = x - point.x;
+            double dy = y - point.y;
+            double dz = z - point.z;
+            return dx * dx + dy * dy + dz * dz;
+        }
+    }
+
+    /** A query hit: the entry and its distance from the query center. */
+    public record Hit(Entry entry, double distance) {}
+
+    /**
+     * Entities within {@code radius} of {@code center} that match {@code filter}.
+     * @param exclude entity ID to leave out (the asking agent), or -1
+     * @param sortByDistance nearest first; otherwise section order
+     * @param maxCount at most this many hits; the result is truncated after sorting
+     */
+    public List<Hit> query(ServerLevel level, long tick, Vec3 center, double radius, int exclude,
+                           Predicate<Entry> filter, boolean sortByDistance, int maxCount) {
+        if (tick != cacheTick) {
+            sections.clear();
+            cacheTick = tick;
+        }
+        Map<Long, List<Entry>> levelSections = sections.computeIfAbsent(level, l -> new HashMap<>());
+
+        double radiusSqr = radius * radius;
+        int minX = SectionPos.blockToSectionCoord(center.x - radius);
+        int minY = SectionPos.blockToSectionCoord(center.y - radius);
+        int minZ = SectionPos.blockToSectionCoord(center.z - radius);
+        int maxX = SectionPos.blockToSectionCoord(center.x + radius);
+        int maxY = SectionPos.blockToSectionCoord(center.y + radius);
+        int maxZ = SectionPos.blockToSectionCoord(center.z + radius);
+
+        List<Hit> hits = new ArrayList<>();
+        for (int sx = minX; sx <= maxX; sx++) {
+            for (int sz = minZ; sz <= maxZ; sz++) {
+                for (int sy = minY; sy <= maxY; sy++) {
+                    List<Entry> entries = levelSections.computeIfAbsent(SectionPos.asLong(sx, sy, sz),
+                            key -> scanSection(level, key));
+                    for (Entry entry : entries) {
+                        if (entry.id() == exclude) continue;
+                        double distanceSqr = entry.distanceToSqr(center);
+                        if (distanceSqr <= radiusSqr && filter.test(entry)) {
+                            hits.add(new Hit(entry, Math.sqrt(distanceSqr)));
+                        }
+                    }
+                    if (!sortByDistance && hits.size() >= maxCount) {
+                        return hits.subList(0, maxCount);
+                    }
+                }
+            }
+        }
+        if (sortByDistance) {
+            hits.sort(Comparator.comparingDouble(Hit::distance));
+        }
+        return hits.size() > maxCount ? hits.subList(0, maxCount) : hits;
+    }
+
+    private static List<Entry> scanSection(ServerLevel level, long sectionKey) {
+        int sx = SectionPos.x(sectionKey);
+        int sy = SectionPos.y(sectionKey);
+        int sz = SectionPos.z(sectionKey);
+        AABB box = new AABB(
+                SectionPos.sectionToBlockCoord(sx), SectionPos.sectionToBlockCoord(sy), SectionPos.sectionToBlockCoord(sz),
+                SectionPos.sectionToBlockCoord(sx + 1), SectionPos.sectionToBlockCoord(sy + 1), SectionPos.sectionToBlockCoord(sz + 1));
+        List<Entity> entities = level.getEntities((Entity) null, box, entity -> entity.isAlive()
+                // Bounding boxes may straddle sections; keep each entity in the section of its position.
+                && SectionPos.blockToSectionCoord(entity.getX()) == sx
+                && SectionPos.blockToSectionCoord(entity.getY()) == sy
+                && SectionPos.blockToSectionCoord(entity.getZ()) == sz);
+        if (entities.isEmpty()) return List.of();
+        List<Entry> entries = new ArrayList<>(entities.size());
+        for (Entity entity : entities) {
+            entries.add(Entry.of(entity));
+        }
+        return entries;
+    }
+
+    private static String categoryOf(Entity entity) {
+        if (entity instanceof AgentEntity) return "agent";
+        if (entity instanceof Player) return "player";
+        if (entity instanceof ItemEntity) return "item";
+        return switch (entity.getType().getCategory()) {
+            case MONSTER -> "hostile";
+            case MISC -> "other";
+            default -> "passive";
+        };
+    }
+
+    /**
+     * Whether an entry matches a {@code types} filter value: a category name
+     * or an entity type ID such as {@code minecraft:zombie}.
+     */
+    public static boolean matchesType(Entry entry, String type) {
+        return type.equals(entry.category()) || type.equals(entry.type())
+                || (type.indexOf(':') < 0 && entry.type().equals("minecraft:" + type));
+    }
+
+    /**
+     * Drop the cache (server shutdown), so no level is kept alive.
+     */
+    public void clear() {
+        sections.clear();
+        cacheTick = -1;
+    }
+}
@@ -0,0 +1,140 @@
+package com.mineavatar.perception;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.List;
+
+/**
+ * A fixed observation layout registered with {@code observation.register}: which agents, which
+ * {@link PerceptionField}s, and how much padding. {@link #write} turns a snapshot frame into one
+ * little-endian buffer of 4-byte slots that a client can map straight into an array.
+ *
+ * The buffer holds {@code agentSlots} blocks of {@code stride} slots each, in the order of
+ * {@code agents}. Each block starts with a {@code present} int32 (1 if the agent exists and is
+ * alive), followed by the fields in request order; everything else is zero, including the whole
+ * block of a missing agent and the padding agent blocks past the listed agents.
+ */
+public final class ObservationLayout {
+
+    /** Slot type of a field in the layout description. */
+    private static final String FLOAT32 = "float32";
+    private static final String INT32 = "int32";
+
+    private final int id;
+    private final List<String> agents;
+    private final List<PerceptionField> fields;
+    private final int stride;
+    private final int agentSlots;
+
+    public ObservationLayout(int id, List<String> agents, List<PerceptionField> fields, int stride, int agentSlots) {
+        this.id = id;
+        this.agents = List.copyOf(agents);
+        this.fields = List.copyOf(fields);
+        this.stride = stride;
+        this.agentSlots = agentSlots;
+    }
+
+    /**
+     * Number of slots a field takes, or 0 if it has no numeric form (name, uuid).
+     */
+    public static int slots(PerceptionField field) {
+        return switch (field) {
+            case POSITION -> 3;
+            case HEALTH, MAX_HEALTH, YAW, PITCH, NAVIGATING, ON_GROUND, IN_WATER, LOOK_TARGET -> 1;
+            case NAME, UUID -> 0;
+        };
+    }
+
+    /** Slots per agent without padding: {@code present} plus the fields. */
+    public static int usedSlots(List<PerceptionField> fields) {
+        int slots = 1;
+        for (PerceptionField field : fields) {
+            slots += slots(field);
+        }
+        return slots;
+    }
+
+    private static String type(PerceptionField field) {
+        return switch (field) {
+            case NAVIGATING, ON_GROUND, IN_WATER, LOOK_TARGET -> INT32;
+            default -> FLOAT32;
+        };
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public int byteSize() {
+        return agentSlots * stride * 4;
+    }
+
+    /**
+     * Offsets (in slots, relative to an agent block) and types of every field, for the client to
+     * build its views once.
+     */
+    public JsonObject describe() {
+        JsonArray fieldList = new JsonArray();
+        fieldList.add(slot("present", 0, 1, INT32));
+        int offset = 1;
+        for (PerceptionField field : fields) {
+            fieldList.add(slot(field.getWireName(), offset, slots(field), type(field)));
+            offset += slots(field);
+        }
+        JsonArray agentList = new JsonArray();
+        agents.forEach(agentList::add);
+
+        JsonObject data = new JsonObject();
+        data.addProperty("layout", id);
+        data.add("agents", agentList);
+        data.add("fields", fieldList);
+        data.addProperty("stride", stride);
+        data.addProperty("agentSlots", agentSlots);
+        data.addProperty("bytes", byteSize());
+        return data;
+    }
+
+    private static JsonObject slot(String name, int offset, int count, String type) {
+        JsonObject slot = new JsonObject();
+        slot.addProperty("name", name);
+        slot.addProperty("offset", offset);
+        slot.addProperty("count", count);
+        slot.addProperty("type", type);
+        return slot;
+    }
+
+    /**
+     * Fill the layout from a frame. Safe on any thread.
+     */
+    public byte[] write(PerceptionSnapshots.Frame frame) {
+        ByteBuffer out = ByteBuffer.allocate(byteSize()).order(ByteOrder.LITTLE_ENDIAN);
+        for (int i = 0; i < agents.size(); i++) {
+            AgentSnapshot agent = frame.agent(agents.get(i));
+            if (agent == null || !agent.alive()) continue;
+            out.position(i * stride * 4);
+            out.putInt(1);
+            for (PerceptionField field : fields) {
+                switch (field) {
+                    case POSITION -> {
+                        out.putFloat((float) agent.x());
+                        out.putFloat((float) agent.y());
+                        out.putFloat((float) agent.z());
+                    }
+                    case HEALTH -> out.putFloat(agent.health());
+                    case MAX_HEALTH -> out.putFloat(agent.maxHealth());
+                    case YAW -> out.putFloat(agent.yaw());
+                    case PITCH -> out.putFloat(agent.pitch());
+                    case NAVIGATING -> out.putInt(agent.navigating() ? 1 : 0);
+                    case ON_GROUND -> out.putInt(agent.onGround() ? 1 : 0);
+                    case IN_WATER -> out.putInt(agent.inWater() ? 1 : 0);
+                    case LOOK_TARGET -> out.putInt(agent.lookTarget() != null ? 1 : 0);
+                    case NAME, UUID -> { }
+                }
+            }
+        }
+        return out.array();
+    }
+}
@@ -0,0 +1,41 @@
+package com.mineavatar.perception;
+
+import javax.annotation.Nullable;
+
+/**
+ * The versioned fields of a perception.self result, in response order.
+ * {@code tick} is not listed: it is part of every response.
+ */
+public enum PerceptionField {
+    NAME("name"),
+    POSITION("position"),
+    HEALTH("health"),
+    MAX_HEALTH("maxHealth"),
+    YAW("yaw"),
+    PITCH("pitch"),
+    NAVIGATING("isNavigating"),
+    ON_GROUND("onGround"),
+    IN_WATER("inWater"),
+    LOOK_TARGET("lookTarget"),
+    UUID("uuid");
+
+    private static final PerceptionField[] VALUES = values();
+
+    private final String wireName;
+
+    PerceptionField(String wireName) {
+        this.wireName = wireName;
+    }
+
+    public String getWireName() {
+        return wireName;
+    }
+
+    @Nullable
+    public static PerceptionField fromWireName(String name) {
+        for (PerceptionField field : VALUES) {
+            if (field.wireName.equals(name)) return field;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,96 @@
+package com.mineavatar.perception;
+
+import com.mineavatar.MineAvatar;
+import com.mineavatar.entity.AgentEntity;
+import com.mineavatar.entity.AgentIndex;
+import net.minecraft.server.MinecraftServer;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * The agents' observable state as of the end of the last server tick.
+ *
+ * The server thread captures a new {@link Frame} after every tick and swaps it in with a single
+ * volatile write, so readers on any thread (the network I/O threads answering perception
+ * requests) always see one consistent tick without touching the world.
+ * Listeners are told about each new frame right after it is published, on the server thread.
+ */
+public class PerceptionSnapshots {
+
+    private static final PerceptionSnapshots INSTANCE = new PerceptionSnapshots();
+
+    /**
+     * All agents as of {@code tick}, in level order. {@code tick} is -1 before the first capture.
+     */
+    public record Frame(long tick, List<AgentSnapshot> agents, Map<String, AgentSnapshot> byName) {
+
+        static final Frame EMPTY = new Frame(-1, List.of(), Map.of());
+
+        @Nullable
+        public AgentSnapshot agent(String name) {
+            return byName.get(name);
+        }
+    }
+
+    /**
+     * Receives each newly published frame on the server thread.
+     */
+    @FunctionalInterface
+    public interface FrameListener {
+        void onFrame(Frame frame);
+    }
+
+    private volatile Frame current = Frame.EMPTY;
+    private final CopyOnWriteArrayList<FrameListener> listeners = new CopyOnWriteArrayList<>();
+
+    public static PerceptionSnapshots get() {
+        return INSTANCE;
+    }
+
+    public Frame current() {
+        return current;
+    }
+
+    public void addListener(FrameListener listener) {
+        listeners.addIfAbsent(listener);
+    }
+
+    public void removeListener(FrameListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Capture every loaded agent and publish the result. Called once per server tick,
+     * after entities have ticked.
+     */
+    public void capture(MinecraftServer server) {
+        long tick = server.getTickCount();
+        Frame previous = current;
+        List<AgentSnapshot> agents = new ArrayList<>();
+        Map<String, AgentSnapshot> byName = new HashMap<>();
+        for (AgentEntity agent : AgentIndex.get().all()) {
+            AgentSnapshot snapshot = AgentSnapshot.capture(agent, tick, previous.agent(agent.getAgentName()));
+            agents.add(snapshot);
+            byName.putIfAbsent(snapshot.name(), snapshot);
+        }
+        Frame frame = new Frame(tick, List.copyOf(agents), Map.copyOf(byName));
+        current = frame;
+        for (FrameListener listener : listeners) {
+            try {
+                listener.onFrame(frame);
+            } catch (Exception e) {
+                MineAvatar.LOGGER.error("[Perception] Frame listener failed", e);
+            }
+        }
+    }
+
+    public void clear() {
+        current = Frame.EMPTY;
+        listeners.clear();
+    }
+}
@@ -0,0 +1,170 @@
+package com.mineavatar.perception;
+
+import com.google.gson.JsonArray;
+import net.minecraft.commands.arguments.blocks.BlockStateParser;
+import net.minecraft.world.level.block.state.BlockState;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Casts rays through a captured {@link BlockRegion}, for {@code perception.raycast} and
+ * {@code perception.vision}. Safe on any thread: it only reads the region's copied containers.
+ *
+ * Blocks are treated as full cubes and every non-air block stops a ray (the way the crosshair
+ * targets grass and water surfaces too). A ray that leaves the captured area or enters an
+ * unloaded chunk counts as a miss. Distances are measured along the ray from its origin.
+ */
+public final class RayCaster {
+
+    /** Bytes per ray in {@link #castAll}: distance, palette index, block x, y, z. */
+    public static final int HIT_BYTES = 4 * 5;
+
+    private final BlockRegion region;
+    private final double maxDistance;
+    private final Map<BlockState, Integer> paletteIndex = new IdentityHashMap<>();
+    private final JsonArray palette = new JsonArray();
+
+    // Result of the last cast
+    private float distance;
+    private int paletteId;
+    private int hitX;
+    private int hitY;
+    private int hitZ;
+
+    public RayCaster(BlockRegion region, double maxDistance) {
+        this.region = region;
+        this.maxDistance = maxDistance;
+    }
+
+    /** Block state strings of every block hit so far, indexed by the palette indices in the results. */
+    public JsonArray getPalette() {
+        return palette;
+    }
+
+    /**
+     * Cast each ray of {@code directions} ({@code dx, dy, dz} triples, need not be normalised)
+     * from the origin. Per ray, in little-endian order: float32 distance ({@code -1} for a miss),
+     * int32 palette index ({@code -1} for a miss), int32 x, y, z of the hit block.
+     */
+    public byte[] castAll(double ox, double oy, double oz, double[] directions) {
+        int rays = directions.length / 3;
+        ByteBuffer out = ByteBuffer.allocate(rays * HIT_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        for (int i = 0; i < rays; i++) {
+            boolean hit = cast(ox, oy, oz, directions[i * 3], directions[i * 3 + 1], directions[i * 3 + 2]);
+            out.putFloat(hit ? distance : -1f);
+            out.putInt(hit ? paletteId : -1);
+            out.putInt(hit ? hitX : 0);
+            out.putInt(hit ? hitY : 0);
+            out.putInt(hit ? hitZ : 0);
+        }
+        return out.array();
+    }
+
+    /**
+     * Render a {@code width} x {@code height} pinhole camera image from the origin along the
+     * {@link #cameraDirections} of the same view.
+     *
+     * @param depth  receives the distance per pixel as little-endian float32 ({@code -1} for a miss)
+     * @param blocks receives the palette index per pixel as little-endian int32 ({@code -1} for a miss)
+     */
+    public void render(double ox, double oy, double oz, double[] directions, ByteBuffer depth, ByteBuffer blocks) {
+        for (int i = 0; i < directions.length / 3; i++) {
+            boolean hit = cast(ox, oy, oz, directions[i * 3], directions[i * 3 + 1], directions[i * 3 + 2]);
+            depth.putFloat(hit ? distance : -1f);
+            blocks.putInt(hit ? paletteId : -1);
+        }
+    }
+
+    /**
+     * Ray directions ({@code dx, dy, dz} triples) of a {@code width} x {@code height} pinhole
+     * camera looking along {@code yaw}/{@code pitch} (degrees, Minecraft convention) with a vertical
+     * field of view of {@code fov} degrees. Rows go top to bottom, pixels left to right.
+     */
+    public static double[] cameraDirections(float yaw, float pitch, double fov, int width, int height) {
+        double yawRad = Math.toRadians(yaw);
+        double pitchRad = Math.toRadians(pitch);
+        // Forward, right and up vectors of the view
+        double fx = -Math.sin(yawRad) * Math.cos(pitchRad);
+        double fy = -Math.sin(pitchRad);
+        double fz = Math.cos(yawRad) * Math.cos(pitchRad);
+        double rx = -Math.cos(yawRad);
+        double rz = -Math.sin(yawRad);
+        double ux = -rz * fy;
+        double uy = rz * fx - rx * fz;
+        double uz = rx * fy;
+
+        double halfHeight = Math.tan(Math.toRadians(fov) / 2);
+        double halfWidth = halfHeight * width / height;
+        double[] directions = new double[width * height * 3];
+        int i = 0;
+        for (int row = 0; row < height; row++) {
+            double v = (1 - 2 * (row + 0.5) / height) * halfHeight;
+            for (int col = 0; col < width; col++) {
+                double u = (2 * (col + 0.5) / width - 1) * halfWidth;
+                directions[i++] = fx + u * rx + v * ux;
+                directions[i++] = fy + v * uy;
+                directions[i++] = fz + u * rz + v * uz;
+            }
+        }
+        return directions;
+    }
+
+    /**
+     * Step through the blocks along one ray (Amanatides–Woo voxel traversal) until a non-air
+     * block, the end of the captured area or {@link #maxDistance}.
+     */
+    private boolean cast(double ox, double oy, double oz, double dx, double dy, double dz) {
+        double length = Math.sqrt(dx * dx + dy * dy + dz * dz);
+        if (length == 0) return false;
+        dx /= length;
+        dy /= length;
+        dz /= length;
+
+        int x = (int) Math.floor(ox);
+        int y = (int) Math.floor(oy);
+        int z = (int) Math.floor(oz);
+        int stepX = dx > 0 ? 1 : -1;
+        int stepY = dy > 0 ? 1 : -1;
+        int stepZ = dz > 0 ? 1 : -1;
+        double deltaX = dx != 0 ? Math.abs(1 / dx) : Double.POSITIVE_INFINITY;
+        double deltaY = dy != 0 ? Math.abs(1 / dy) : Double.POSITIVE_INFINITY;
+        double deltaZ = dz != 0 ? Math.abs(1 / dz) : Double.POSITIVE_INFINITY;
+        double nextX = dx != 0 ? (dx > 0 ? x + 1 - ox : ox - x) * deltaX : Double.POSITIVE_INFINITY;
+        double nextY = dy != 0 ? (dy > 0 ? y + 1 - oy : oy - y) * deltaY : Double.POSITIVE_INFINITY;
+        double nextZ = dz != 0 ? (dz > 0 ? z + 1 - oz : oz - z) * deltaZ : Double.POSITIVE_INFINITY;
+
+        double t = 0;
+        while (t <= maxDistance) {
+            BlockState state = region.getBlockState(x, y, z);
+            if (state == null) return false;
+            if (!state.isAir()) {
+                distance = (float) t;
+                paletteId = paletteIndex.computeIfAbsent(state, s -> {
+                    palette.add(BlockStateParser.serialize(s));
+                    return palette.size() - 1;
+                });
+                hitX = x;
+                hitY = y;
+                hitZ = z;
+                return true;
+            }
+            if (nextX <= nextY && nextX <= nextZ) {
+                t = nextX;
+                nextX += deltaX;
+                x += stepX;
+            } else if (nextY <= nextZ) {
+                t = nextY;
+                nextY += deltaY;
+                y += stepY;
+            } else {
+                t = nextZ;
+                nextZ += deltaZ;
+                z += stepZ;
+            }
+        }
+        return false;
+    }
+}
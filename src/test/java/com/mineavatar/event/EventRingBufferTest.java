@@ -0,0 +1,74 @@
+package com.mineavatar.event;
+
+import com.google.gson.JsonObject;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EventRingBufferTest {
+
+    @Test
+    void drainsInOrderAndResets() {
+        EventRingBuffer buffer = new EventRingBuffer(4);
+        assertTrue(buffer.isEmpty());
+        buffer.add(event("a"));
+        buffer.add(event("b"));
+        assertFalse(buffer.isEmpty());
+
+        EventRingBuffer.Batch batch = buffer.drain();
+        assertEquals(List.of("a", "b"), types(batch));
+        assertEquals(0, batch.dropped());
+        assertTrue(buffer.isEmpty());
+        assertTrue(buffer.drain().events().isEmpty());
+    }
+
+    @Test
+    void overwritesTheOldestAndCountsDrops() {
+        EventRingBuffer buffer = new EventRingBuffer(3);
+        for (String type : List.of("a", "b", "c", "d", "e")) {
+            buffer.add(event(type));
+        }
+        EventRingBuffer.Batch batch = buffer.drain();
+        assertEquals(List.of("c", "d", "e"), types(batch));
+        assertEquals(2, batch.dropped());
+
+        // The drop counter starts over after a drain
+        buffer.add(event("f"));
+        EventRingBuffer.Batch next = buffer.drain();
+        assertEquals(List.of("f"), types(next));
+        assertEquals(0, next.dropped());
+    }
+
+    @Test
+    void keepsOrderAcrossTheWrapAround() {
+        EventRingBuffer buffer = new EventRingBuffer(3);
+        buffer.add(event("a"));
+        buffer.add(event("b"));
+        buffer.drain();
+        // head is reset by the drain; fill past the end again
+        for (String type : List.of("c", "d", "e", "f")) {
+            buffer.add(event(type));
+        }
+        assertEquals(List.of("d", "e", "f"), types(buffer.drain()));
+    }
+
+    @Test
+    void clearDropsEventsAndCount() {
+        EventRingBuffer buffer = new EventRingBuffer(1);
+        buffer.add(event("a"));
+        buffer.add(event("b"));
+        buffer.clear();
+        assertTrue(buffer.isEmpty());
+        assertEquals(0, buffer.drain().dropped());
+    }
+
+    private static AgentEvent event(String type) {
+        return new AgentEvent(type, "agent", new JsonObject());
+    }
+
+    private static List<String> types(EventRingBuffer.Batch batch) {
+        return batch.events().stream().map(AgentEvent::type).toList();
+    }
+}
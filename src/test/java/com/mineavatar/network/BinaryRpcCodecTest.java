@@ -0,0 +1,464 @@
+package com.mineavatar.network;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+import com.mineavatar.action.ActionRegistry;
+import com.mineavatar.action.ActionResult;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+
+import static com.mineavatar.network.BinaryRpcCodec.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Byte-level checks of the binary wire format. Expected frames are built by hand from the
+ * grammar in the {@link BinaryRpcCodec} doc, and encoded frames are read back with an
+ * independent reader, so a change on either side of the format shows up here.
+ */
+class BinaryRpcCodecTest {
+
+    private final BinaryRpcCodec codec = new BinaryRpcCodec(ActionRegistry.get());
+
+    // ── Varints and zigzag ──────────────────────────────────────────
+
+    @Test
+    void varIntUsesSevenBitGroupsLowestFirst() {
+        assertArrayEquals(bytes(0x00), varInt(0));
+        assertArrayEquals(bytes(0x7F), varInt(127));
+        assertArrayEquals(bytes(0x80, 0x01), varInt(128));
+        assertArrayEquals(bytes(0xAC, 0x02), varInt(300));
+        assertArrayEquals(bytes(0xFF, 0xFF, 0xFF, 0xFF, 0x07), varInt(Integer.MAX_VALUE));
+    }
+
+    @Test
+    void varIntAndVarLongRoundTrip() {
+        for (int value : new int[] {0, 1, 127, 128, 16_383, 16_384, 1 << 21, Integer.MAX_VALUE, -1}) {
+            ByteBuf buf = Unpooled.buffer();
+            writeVarInt(buf, value);
+            assertEquals(value, readVarInt(buf));
+            assertFalse(buf.isReadable());
+        }
+        for (long value : new long[] {0, 1, 1L << 35, Long.MAX_VALUE, Long.MIN_VALUE, -1}) {
+            ByteBuf buf = Unpooled.buffer();
+            writeVarLong(buf, value);
+            assertEquals(value, readVarLong(buf));
+            assertFalse(buf.isReadable());
+        }
+    }
+
+    @Test
+    void overlongVarIntIsRejected() {
+        ByteBuf buf = Unpooled.wrappedBuffer(bytes(0x80, 0x80, 0x80, 0x80, 0x80, 0x01));
+        assertThrows(IllegalArgumentException.class, () -> readVarInt(buf));
+    }
+
+    @Test
+    void integersAreZigzagEncoded() {
+        assertArrayEquals(bytes(T_INT, 0x00), value(new JsonPrimitive(0)));
+        assertArrayEquals(bytes(T_INT, 0x01), value(new JsonPrimitive(-1)));
+        assertArrayEquals(bytes(T_INT, 0x02), value(new JsonPrimitive(1)));
+        assertArrayEquals(bytes(T_INT, 0x03), value(new JsonPrimitive(-2)));
+        assertArrayEquals(bytes(T_INT, 0x80, 0x01), value(new JsonPrimitive(64)));
+    }
+
+    // ── Value tags ──────────────────────────────────────────────────
+
+    @Test
+    void scalarTags() {
+        assertArrayEquals(bytes(T_NULL), value(JsonNull.INSTANCE));
+        assertArrayEquals(bytes(T_FALSE), value(new JsonPrimitive(false)));
+        assertArrayEquals(bytes(T_TRUE), value(new JsonPrimitive(true)));
+        assertArrayEquals(bytes(T_STRING, 0x02, 'h', 'i'), value(new JsonPrimitive("hi")));
+
+        byte[] half = value(new JsonPrimitive(0.5));
+        assertEquals(9, half.length);
+        assertEquals(T_DOUBLE, half[0]);
+        assertEquals(0.5, Unpooled.wrappedBuffer(half, 1, 8).readDouble());
+    }
+
+    @Test
+    void stringLengthCountsUtf8Bytes() {
+        String text = "é✓😀";
+        byte[] utf8 = text.getBytes(StandardCharsets.UTF_8);
+        byte[] encoded = value(new JsonPrimitive(text));
+        assertEquals(T_STRING, encoded[0]);
+        assertEquals(utf8.length, encoded[1]);
+        assertEquals(2 + utf8.length, encoded.length);
+    }
+
+    @Test
+    void parsedNumbersKeepExactIntegers() {
+        // Gson's parser yields LazilyParsedNumber; integral values must still go out as INT
+        JsonObject parsed = JsonParser.parseString("{\"a\": 5, \"b\": 1.5, \"c\": 123456789012, \"d\": 1e30}")
+                .getAsJsonObject();
+        assertEquals(T_INT, value(parsed.get("a"))[0]);
+        assertEquals(T_DOUBLE, value(parsed.get("b"))[0]);
+        assertEquals(T_INT, value(parsed.get("c"))[0]);
+        assertEquals(T_DOUBLE, value(parsed.get("d"))[0]);
+    }
+
+    @Test
+    void containersRoundTripThroughRequestParams() {
+        JsonObject params = new JsonObject();
+        params.addProperty("name", "Steve");
+        params.addProperty("count", -42);
+        params.addProperty("big", Long.MIN_VALUE);
+        params.addProperty("ratio", 0.25);
+        params.addProperty("flag", true);
+        params.add("nothing", JsonNull.INSTANCE);
+        JsonArray list = new JsonArray();
+        list.add(1);
+        list.add("two");
+        JsonObject nested = new JsonObject();
+        nested.addProperty("x", 3);
+        list.add(nested);
+        params.add("list", list);
+
+        ByteBuf frame = Unpooled.buffer();
+        frame.writeByte(MSG_REQUEST);
+        writeValue(new JsonPrimitive("r1"), frame);
+        writeVarInt(frame, 0);
+        writeValue(new JsonPrimitive("agent.chat"), frame);
+        writeValue(params, frame);
+
+        RpcRequest request = single(codec.decode(frame));
+        assertEquals("r1", request.id());
+        assertEquals("agent.chat", request.method());
+        assertEquals(params, request.params());
+        assertEquals(Long.MIN_VALUE, request.params().get("big").getAsLong());
+    }
+
+    // ── Requests ────────────────────────────────────────────────────
+
+    @Test
+    void decodesRequestByHand() {
+        // 0x01, id INT 7, methodId 0 + name, params {"a": 5}
+        ByteBuf frame = Unpooled.buffer();
+        frame.writeBytes(bytes(MSG_REQUEST, T_INT, 14, 0x00, T_STRING, 4, 'p', 'i', 'n', 'g',
+                T_OBJECT, 1, 1, 'a', T_INT, 10));
+
+        RpcRequest request = single(codec.decode(frame));
+        assertTrue(request.isValid());
+        assertEquals("7", request.id());
+        assertEquals("ping", request.method());
+        assertEquals(5, request.params().get("a").getAsInt());
+        assertEquals(0, request.deadlineNanos());
+    }
+
+    @Test
+    void resolvesMethodIdsFromTheRegistry() {
+        int id = ActionRegistry.get().methodId("agent.moveTo");
+        assertTrue(id > 0);
+        ByteBuf frame = Unpooled.buffer();
+        frame.writeByte(MSG_REQUEST);
+        frame.writeByte(T_NULL);
+        writeVarInt(frame, id);
+        frame.writeByte(T_NULL);
+
+        RpcRequest request = single(codec.decode(frame));
+        assertNull(request.id());
+        assertEquals("agent.moveTo", request.method());
+        assertEquals(new JsonObject(), request.params());
+    }
+
+    @Test
+    void unknownMethodIdIsAnInvalidRequest() {
+        ByteBuf frame = Unpooled.buffer();
+        frame.writeByte(MSG_REQUEST);
+        writeValue(new JsonPrimitive("x"), frame);
+        writeVarInt(frame, 1_000_000);
+        writeValue(new JsonObject(), frame);
+
+        RpcRequest request = single(codec.decode(frame));
+        assertFalse(request.isValid());
+        assertEquals("x", request.id());
+    }
+
+    @Test
+    void nonObjectParamsAreAnInvalidRequest() {
+        ByteBuf frame = Unpooled.buffer();
+        frame.writeBytes(bytes(MSG_REQUEST, T_NULL, 0x00, T_STRING, 1, 'm', T_TRUE));
+        assertFalse(single(codec.decode(frame)).isValid());
+    }
+
+    @Test
+    void bytesInParamsDecodeToBase64() {
+        ByteBuf frame = Unpooled.buffer();
+        frame.writeBytes(bytes(MSG_REQUEST, T_NULL, 0x00, T_STRING, 1, 'm',
+                T_OBJECT, 1, 1, 'b', T_BYTES, 3, 0x00, 0xFF, 0x10));
+        RpcRequest request = single(codec.decode(frame));
+        assertEquals(Base64.getEncoder().encodeToString(bytes(0x00, 0xFF, 0x10)),
+                request.params().get("b").getAsString());
+    }
+
+    @Test
+    void timedRequestCarriesADeadline() {
+        ByteBuf frame = Unpooled.buffer();
+        frame.writeBytes(bytes(MSG_TIMED_REQUEST, T_NULL, 0x00, T_STRING, 1, 'm', T_NULL));
+        writeVarLong(frame, 60_000);
+        long before = System.nanoTime();
+
+        RpcRequest request = single(codec.decode(frame));
+        long remaining = request.deadlineNanos() - before;
+        assertTrue(remaining > 59_000_000_000L && remaining <= 60_000_000_000L + 1_000_000_000L,
+                "deadline " + remaining + " ns away");
+        assertFalse(frame.isReadable());
+    }
+
+    @Test
+    void batchMixesPlainAndTimedRequests() {
+        ByteBuf frame = Unpooled.buffer();
+        frame.writeByte(MSG_BATCH);
+        writeVarInt(frame, 2);
+        frame.writeBytes(bytes(MSG_REQUEST, T_INT, 2, 0x00, T_STRING, 1, 'a', T_NULL));
+        frame.writeBytes(bytes(MSG_TIMED_REQUEST, T_INT, 4, 0x00, T_STRING, 1, 'b', T_NULL));
+        writeVarLong(frame, 1000);
+
+        RpcFrame decoded = codec.decode(frame);
+        assertNull(decoded.parseError());
+        assertTrue(decoded.batch());
+        assertEquals(2, decoded.requests().size());
+        assertEquals("1", decoded.requests().get(0).id());
+        assertEquals("a", decoded.requests().get(0).method());
+        assertEquals(0, decoded.requests().get(0).deadlineNanos());
+        assertEquals("2", decoded.requests().get(1).id());
+        assertNotEquals(0, decoded.requests().get(1).deadlineNanos());
+    }
+
+    // ── Malformed frames ────────────────────────────────────────────
+
+    @Test
+    void batchEntryMustBeARequest() {
+        ByteBuf frame = Unpooled.wrappedBuffer(bytes(MSG_BATCH, 1, MSG_RESPONSE, T_NULL, T_NULL));
+        assertNotNull(codec.decode(frame).parseError());
+    }
+
+    @Test
+    void unknownMessageTypeIsAParseError() {
+        assertNotNull(codec.decode(Unpooled.wrappedBuffer(bytes(0x7E))).parseError());
+    }
+
+    @Test
+    void truncatedFrameIsAParseError() {
+        ByteBuf frame = Unpooled.wrappedBuffer(bytes(MSG_REQUEST, T_STRING, 5, 'a'));
+        RpcFrame decoded = codec.decode(frame);
+        assertNotNull(decoded.parseError());
+        assertTrue(decoded.requests().isEmpty());
+
+        assertNotNull(codec.decode(Unpooled.wrappedBuffer(bytes(MSG_REQUEST, T_DOUBLE, 0x00))).parseError());
+        assertNotNull(codec.decode(Unpooled.buffer()).parseError());
+    }
+
+    @Test
+    void countLargerThanTheFrameIsRejectedBeforeAllocating() {
+        ByteBuf frame = Unpooled.buffer();
+        frame.writeBytes(bytes(MSG_REQUEST, T_NULL, 0x00, T_STRING, 1, 'm', T_ARRAY));
+        writeVarInt(frame, Integer.MAX_VALUE);
+        assertNotNull(codec.decode(frame).parseError());
+    }
+
+    @Test
+    void unknownValueTagIsAParseError() {
+        ByteBuf frame = Unpooled.wrappedBuffer(bytes(MSG_REQUEST, 0x42));
+        assertNotNull(codec.decode(frame).parseError());
+    }
+
+    @Test
+    void nonPrimitiveIdIsAParseError() {
+        ByteBuf frame = Unpooled.wrappedBuffer(bytes(MSG_REQUEST, T_ARRAY, 0, 0x00, T_STRING, 1, 'm', T_NULL));
+        assertNotNull(codec.decode(frame).parseError());
+    }
+
+    @Test
+    void deepNestingIsAParseError() {
+        ByteBuf frame = Unpooled.buffer();
+        frame.writeBytes(bytes(MSG_REQUEST, T_NULL, 0x00, T_STRING, 1, 'm', T_OBJECT, 1, 1, 'a'));
+        for (int i = 0; i < 100; i++) {
+            frame.writeBytes(bytes(T_ARRAY, 1));
+        }
+        frame.writeByte(T_NULL);
+        assertNotNull(codec.decode(frame).parseError());
+    }
+
+    // ── Responses and notifications ─────────────────────────────────
+
+    @Test
+    void encodesSuccessResponse() {
+        JsonObject data = new JsonObject();
+        data.addProperty("n", 3);
+        ByteBuf out = Unpooled.buffer();
+        codec.encode(RpcResponse.of("9", ActionResult.ok(data)), out);
+
+        assertEquals(MSG_RESPONSE, out.readUnsignedByte());
+        assertEquals(new JsonPrimitive("9"), Reader.value(out));
+        JsonObject result = Reader.value(out).getAsJsonObject();
+        assertFalse(out.isReadable());
+        assertTrue(result.get("success").getAsBoolean());
+        assertEquals(3, result.getAsJsonObject("data").get("n").getAsInt());
+    }
+
+    @Test
+    void byteAttachmentsGoOutRaw() {
+        byte[] payload = {1, 2, 3, (byte) 0xFE};
+        JsonObject data = new JsonObject();
+        data.addProperty("tick", 5);
+        ByteBuf out = Unpooled.buffer();
+        codec.encode(RpcResponse.of("1", ActionResult.ok(data).withBytes("blob", payload)), out);
+
+        assertEquals(MSG_RESPONSE, out.readUnsignedByte());
+        Reader.value(out);
+        assertEquals(T_OBJECT, out.readUnsignedByte());
+        assertEquals(2, readVarInt(out));
+        assertEquals("success", Reader.key(out));
+        assertEquals(T_TRUE, out.readUnsignedByte());
+        assertEquals("data", Reader.key(out));
+        assertEquals(T_OBJECT, out.readUnsignedByte());
+        assertEquals(2, readVarInt(out));
+        assertEquals("tick", Reader.key(out));
+        assertEquals(5, Reader.value(out).getAsInt());
+        assertEquals("blob", Reader.key(out));
+        assertEquals(T_BYTES, out.readUnsignedByte());
+        assertEquals(payload.length, readVarInt(out));
+        byte[] read = new byte[payload.length];
+        out.readBytes(read);
+        assertArrayEquals(payload, read);
+        assertFalse(out.isReadable());
+    }
+
+    @Test
+    void failedResultKeepsItsEnvelope() {
+        ByteBuf out = Unpooled.buffer();
+        codec.encode(RpcResponse.of("1", ActionResult.fail("NOPE", "no", "try later")), out);
+        assertEquals(MSG_RESPONSE, out.readUnsignedByte());
+        Reader.value(out);
+        JsonObject result = Reader.value(out).getAsJsonObject();
+        assertEquals(ActionResult.fail("NOPE", "no", "try later").toJson(), result);
+    }
+
+    @Test
+    void encodesErrorWithZigzagCode() {
+        ByteBuf out = Unpooled.buffer();
+        codec.encode(RpcResponse.error(null, -32602, "bad"), out);
+        assertEquals(MSG_ERROR, out.readUnsignedByte());
+        assertEquals(T_NULL, out.readUnsignedByte());
+        long zigzag = readVarLong(out);
+        assertEquals(-32602, (zigzag >>> 1) ^ -(zigzag & 1));
+        assertEquals("bad", Reader.key(out));
+        assertFalse(out.isReadable());
+    }
+
+    @Test
+    void encodesNotificationAndBatch() {
+        JsonObject params = new JsonObject();
+        params.addProperty("agent", "Alex");
+        ByteBuf out = Unpooled.buffer();
+        codec.encodeBatch(List.of(new RpcNotification("nav.arrived", params), RpcResponse.error("3", 1, "x")), out);
+
+        assertEquals(MSG_BATCH_RESPONSE, out.readUnsignedByte());
+        assertEquals(2, readVarInt(out));
+        assertEquals(MSG_NOTIFICATION, out.readUnsignedByte());
+        assertEquals("nav.arrived", Reader.key(out));
+        assertEquals(params, Reader.value(out));
+        assertEquals(MSG_ERROR, out.readUnsignedByte());
+        assertEquals(new JsonPrimitive("3"), Reader.value(out));
+        assertEquals(2, readVarLong(out));
+        assertEquals("x", Reader.key(out));
+        assertFalse(out.isReadable());
+    }
+
+    // ── Helpers ─────────────────────────────────────────────────────
+
+    private static RpcRequest single(RpcFrame frame) {
+        assertNull(frame.parseError(), frame.parseError());
+        assertFalse(frame.batch());
+        assertEquals(1, frame.requests().size());
+        return frame.requests().get(0);
+    }
+
+    private static byte[] varInt(int value) {
+        ByteBuf buf = Unpooled.buffer();
+        writeVarInt(buf, value);
+        return toArray(buf);
+    }
+
+    private static byte[] value(JsonElement value) {
+        ByteBuf buf = Unpooled.buffer();
+        writeValue(value, buf);
+        return toArray(buf);
+    }
+
+    private static byte[] toArray(ByteBuf buf) {
+        byte[] array = new byte[buf.readableBytes()];
+        buf.readBytes(array);
+        return array;
+    }
+
+    private static byte[] bytes(int... values) {
+        byte[] array = new byte[values.length];
+        for (int i = 0; i < values.length; i++) {
+            array[i] = (byte) values[i];
+        }
+        return array;
+    }
+
+    /** Minimal reader for the value grammar, written from the spec rather than the codec. */
+    private static final class Reader {
+
+        static String key(ByteBuf in) {
+            int length = (int) unsigned(in);
+            return in.readCharSequence(length, StandardCharsets.UTF_8).toString();
+        }
+
+        static JsonElement value(ByteBuf in) {
+            int tag = in.readUnsignedByte();
+            switch (tag) {
+                case T_NULL: return JsonNull.INSTANCE;
+                case T_FALSE: return new JsonPrimitive(false);
+                case T_TRUE: return new JsonPrimitive(true);
+                case T_INT: {
+                    long n = unsigned(in);
+                    return new JsonPrimitive((n >>> 1) ^ -(n & 1));
+                }
+                case T_DOUBLE: return new JsonPrimitive(in.readDouble());
+                case T_STRING: return new JsonPrimitive(key(in));
+                case T_ARRAY: {
+                    JsonArray array = new JsonArray();
+                    for (long i = unsigned(in); i > 0; i--) array.add(value(in));
+                    return array;
+                }
+                case T_OBJECT: {
+                    JsonObject object = new JsonObject();
+                    for (long i = unsigned(in); i > 0; i--) {
+                        String name = key(in);
+                        object.add(name, value(in));
+                    }
+                    return object;
+                }
+                case T_BYTES: {
+                    byte[] raw = new byte[(int) unsigned(in)];
+                    in.readBytes(raw);
+                    return new JsonPrimitive(Base64.getEncoder().encodeToString(raw));
+                }
+                default: throw new AssertionError("Unknown tag " + tag);
+            }
+        }
+
+        private static long unsigned(ByteBuf in) {
+            long result = 0;
+            for (int shift = 0; ; shift += 7) {
+                int b = in.readUnsignedByte();
+                result |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) return result;
+            }
+        }
+    }
+}
@@ -0,0 +1,212 @@
+package com.mineavatar.network;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.mineavatar.action.ActionResult;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JsonRpcCodecTest {
+
+    private final JsonRpcCodec codec = JsonRpcCodec.INSTANCE;
+
+    // ── Requests ────────────────────────────────────────────────────
+
+    @Test
+    void decodesSingleRequest() {
+        RpcRequest request = single("{\"jsonrpc\":\"2.0\",\"id\":\"a1\",\"method\":\"agent.chat\","
+                + "\"params\":{\"message\":\"hi\",\"n\":[1,2]}}");
+        assertTrue(request.isValid());
+        assertEquals("a1", request.id());
+        assertEquals("agent.chat", request.method());
+        assertEquals(JsonParser.parseString("{\"message\":\"hi\",\"n\":[1,2]}"), request.params());
+        assertEquals(0, request.deadlineNanos());
+    }
+
+    @Test
+    void primitiveIdsBecomeStrings() {
+        assertEquals("42", single("{\"id\":42,\"method\":\"m\"}").id());
+        assertEquals("true", single("{\"id\":true,\"method\":\"m\"}").id());
+        assertNull(single("{\"id\":null,\"method\":\"m\"}").id());
+    }
+
+    @Test
+    void missingParamsAreAnEmptyObject() {
+        assertEquals(new JsonObject(), single("{\"id\":1,\"method\":\"m\"}").params());
+        assertEquals(new JsonObject(), single("{\"id\":1,\"method\":\"m\",\"params\":[1]}").params());
+    }
+
+    @Test
+    void fieldOrderDoesNotMatter() {
+        RpcRequest request = single("{\"params\":{\"x\":1},\"method\":\"m\",\"extra\":{\"y\":[]},\"id\":\"z\"}");
+        assertEquals("z", request.id());
+        assertEquals("m", request.method());
+        assertEquals(1, request.params().get("x").getAsInt());
+    }
+
+    @Test
+    void missingMethodKeepsTheId() {
+        RpcRequest request = single("{\"id\":7}");
+        assertFalse(request.isValid());
+        assertEquals("7", request.id());
+    }
+
+    @Test
+    void nonPrimitiveIdOrMethodIsInvalid() {
+        assertFalse(single("{\"id\":{},\"method\":\"m\"}").isValid());
+        assertFalse(single("{\"id\":1,\"method\":[\"m\"]}").isValid());
+    }
+
+    @Test
+    void decodesBatchWithInvalidEntries() {
+        RpcFrame frame = decode("[{\"id\":1,\"method\":\"a\"}, 5, {\"id\":2,\"method\":\"b\"}]");
+        assertNull(frame.parseError());
+        assertTrue(frame.batch());
+        assertEquals(3, frame.requests().size());
+        assertEquals("a", frame.requests().get(0).method());
+        assertFalse(frame.requests().get(1).isValid());
+        assertEquals("b", frame.requests().get(2).method());
+    }
+
+    @Test
+    void malformedJsonIsAParseError() {
+        assertNotNull(decode("{\"id\":1,").parseError());
+        assertNotNull(decode("").parseError());
+        assertNotNull(decode("{\"id\":1,\"method\":\"m\"} {}").parseError());
+    }
+
+    @Test
+    void timeoutAndDeadlineSetTheEarlierDeadline() {
+        long before = System.nanoTime();
+        RpcRequest timed = single("{\"id\":1,\"method\":\"m\",\"timeoutMs\":5000}");
+        long remaining = timed.deadlineNanos() - before;
+        assertTrue(remaining > 4_000_000_000L && remaining <= 6_000_000_000L, remaining + " ns");
+
+        long soon = System.currentTimeMillis() + 1000;
+        RpcRequest both = single("{\"id\":1,\"method\":\"m\",\"timeoutMs\":60000,\"deadline\":" + soon + "}");
+        assertTrue(both.deadlineNanos() - before < 2_000_000_000L);
+
+        RpcRequest past = single("{\"id\":1,\"method\":\"m\",\"deadline\":1}");
+        assertNotEquals(0, past.deadlineNanos());
+        assertTrue(past.deadlineNanos() - System.nanoTime() <= 0);
+
+        assertEquals(0, single("{\"id\":1,\"method\":\"m\",\"timeoutMs\":\"soon\"}").deadlineNanos());
+    }
+
+    @Test
+    void decodesMultiByteUtf8() {
+        String text = "é✓😀 ü";
+        RpcRequest request = single("{\"id\":1,\"method\":\"agent.chat\",\"params\":{\"message\":\"" + text + "\"}}");
+        assertEquals(text, request.params().get("message").getAsString());
+    }
+
+    @Test
+    void invalidUtf8BecomesReplacementCharacter() {
+        ByteBuf frame = Unpooled.buffer();
+        frame.writeCharSequence("{\"id\":1,\"method\":\"m\",\"params\":{\"s\":\"a", StandardCharsets.UTF_8);
+        frame.writeByte(0xC3);  // lead byte without its continuation
+        frame.writeCharSequence("b\"}}", StandardCharsets.UTF_8);
+        RpcRequest request = single(codec.decode(frame));
+        assertEquals("a�b", request.params().get("s").getAsString());
+    }
+
+    // ── Responses and notifications ─────────────────────────────────
+
+    @Test
+    void actionResultMatchesToJson() {
+        JsonObject data = new JsonObject();
+        data.addProperty("n", 1);
+        data.add("list", new JsonArray());
+        for (ActionResult result : List.of(ActionResult.ok(data), ActionResult.ok(),
+                ActionResult.fail("E", "msg"), ActionResult.fail("E", "msg", "hint"))) {
+            JsonObject encoded = encode(RpcResponse.of("1", result));
+            assertEquals("2.0", encoded.get("jsonrpc").getAsString());
+            assertEquals("1", encoded.get("id").getAsString());
+            assertEquals(result.toJson(), encoded.get("result"));
+        }
+    }
+
+    @Test
+    void byteAttachmentsAreBase64() {
+        byte[] payload = {0, 1, (byte) 0xFF};
+        JsonObject data = new JsonObject();
+        data.addProperty("tick", 3);
+        ActionResult result = ActionResult.ok(data).withBytes("blob", payload);
+
+        JsonObject encoded = encode(RpcResponse.of("1", result));
+        JsonObject encodedData = encoded.getAsJsonObject("result").getAsJsonObject("data");
+        assertEquals(3, encodedData.get("tick").getAsInt());
+        assertArrayEquals(payload, Base64.getDecoder().decode(encodedData.get("blob").getAsString()));
+        assertEquals(result.toJson(), encoded.get("result"));
+    }
+
+    @Test
+    void errorResponseWithoutId() {
+        JsonObject encoded = encode(RpcResponse.error(null, -32600, "Invalid"));
+        assertFalse(encoded.has("id"));
+        assertFalse(encoded.has("result"));
+        assertEquals(-32600, encoded.getAsJsonObject("error").get("code").getAsInt());
+        assertEquals("Invalid", encoded.getAsJsonObject("error").get("message").getAsString());
+    }
+
+    @Test
+    void plainResultObject() {
+        JsonObject result = new JsonObject();
+        result.addProperty("session", "abc");
+        assertEquals(RpcResponse.of("1", result).toJson(), encode(RpcResponse.of("1", result)));
+    }
+
+    @Test
+    void notificationAndBatch() {
+        JsonObject params = new JsonObject();
+        params.addProperty("agent", "Zoë ✓");
+        RpcNotification notification = new RpcNotification("nav.arrived", params);
+        RpcResponse response = RpcResponse.error("2", 1, "x");
+
+        ByteBuf out = Unpooled.buffer();
+        codec.encodeBatch(List.of(notification, response), out);
+        JsonArray batch = JsonParser.parseString(out.toString(StandardCharsets.UTF_8)).getAsJsonArray();
+        assertEquals(2, batch.size());
+        assertEquals(notification.toJson(), batch.get(0));
+        assertEquals(response.toJson(), batch.get(1));
+    }
+
+    @Test
+    void responseRoundTripsNonAsciiStrings() {
+        String text = "日本語 😀 \"quoted\" \\ \n";
+        JsonObject data = new JsonObject();
+        data.addProperty("text", text);
+        JsonObject encoded = encode(RpcResponse.of("1", ActionResult.ok(data)));
+        assertEquals(text, encoded.getAsJsonObject("result").getAsJsonObject("data").get("text").getAsString());
+    }
+
+    // ── Helpers ─────────────────────────────────────────────────────
+
+    private RpcFrame decode(String json) {
+        return codec.decode(Unpooled.copiedBuffer(json, StandardCharsets.UTF_8));
+    }
+
+    private RpcRequest single(String json) {
+        return single(decode(json));
+    }
+
+    private static RpcRequest single(RpcFrame frame) {
+        assertNull(frame.parseError(), frame.parseError());
+        assertFalse(frame.batch());
+        return frame.requests().get(0);
+    }
+
+    private JsonObject encode(RpcMessage message) {
+        ByteBuf out = Unpooled.buffer();
+        codec.encode(message, out);
+        return JsonParser.parseString(out.toString(StandardCharsets.UTF_8)).getAsJsonObject();
+    }
+}
@@ -0,0 +1,82 @@
+package com.mineavatar.network;
+
+import com.google.gson.JsonObject;
+import com.mineavatar.action.ActionResult;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReplayCacheTest {
+
+    private static final long HOUR = TimeUnit.HOURS.toNanos(1);
+
+    @Test
+    void replaysOnlyTheSameMethodAndParams() {
+        ReplayCache cache = new ReplayCache(8, HOUR);
+        CompletableFuture<ActionResult> result = new CompletableFuture<>();
+        cache.put("1", "agent.attack", params(1), result);
+
+        assertSame(result, cache.get("1", "agent.attack", params(1)));
+        assertNull(cache.get("1", "agent.attack", params(2)));
+        // A mismatch also forgets the old entry: the ID now names a different command
+        assertNull(cache.get("1", "agent.attack", params(1)));
+
+        cache.put("2", "agent.attack", params(1), result);
+        assertNull(cache.get("2", "agent.chat", params(1)));
+        assertNull(cache.get("3", "agent.attack", params(1)));
+    }
+
+    @Test
+    void evictsTheLeastRecentlyUsedEntry() {
+        ReplayCache cache = new ReplayCache(2, HOUR);
+        CompletableFuture<ActionResult> a = new CompletableFuture<>();
+        CompletableFuture<ActionResult> b = new CompletableFuture<>();
+        CompletableFuture<ActionResult> c = new CompletableFuture<>();
+        cache.put("a", "m", params(0), a);
+        cache.put("b", "m", params(0), b);
+        assertSame(a, cache.get("a", "m", params(0)));  // a is now the most recently used
+        cache.put("c", "m", params(0), c);
+
+        assertSame(a, cache.get("a", "m", params(0)));
+        assertNull(cache.get("b", "m", params(0)));
+        assertSame(c, cache.get("c", "m", params(0)));
+    }
+
+    @Test
+    void expiredEntriesAreNotReplayed() {
+        ReplayCache cache = new ReplayCache(8, -1);
+        cache.put("1", "m", params(0), new CompletableFuture<>());
+        assertNull(cache.get("1", "m", params(0)));
+    }
+
+    @Test
+    void removeOnlyDropsTheMatchingResult() {
+        ReplayCache cache = new ReplayCache(8, HOUR);
+        CompletableFuture<ActionResult> first = new CompletableFuture<>();
+        CompletableFuture<ActionResult> second = new CompletableFuture<>();
+        cache.put("1", "m", params(0), first);
+        cache.put("1", "m", params(0), second);
+
+        cache.remove("1", first);
+        assertSame(second, cache.get("1", "m", params(0)));
+        cache.remove("1", second);
+        assertNull(cache.get("1", "m", params(0)));
+    }
+
+    @Test
+    void clearForgetsEverything() {
+        ReplayCache cache = new ReplayCache(8, HOUR);
+        cache.put("1", "m", params(0), new CompletableFuture<>());
+        cache.clear();
+        assertNull(cache.get("1", "m", params(0)));
+    }
+
+    private static JsonObject params(int target) {
+        JsonObject params = new JsonObject();
+        params.addProperty("target", target);
+        return params;
+    }
+}
@@ -0,0 +1,56 @@
+package com.mineavatar.network;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TokenBucketTest {
+
+    @Test
+    void zeroRateIsUnlimited() {
+        TokenBucket bucket = new TokenBucket(0, 1);
+        assertTrue(bucket.isUnlimited());
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(bucket.tryAcquire());
+        }
+        assertEquals(0, bucket.millisUntilNextPermit());
+    }
+
+    @Test
+    void startsFullAndStopsAtTheBurst() {
+        // One permit every ~11.6 days: nothing refills during the test
+        TokenBucket bucket = new TokenBucket(0.000001, 3);
+        assertTrue(bucket.tryAcquire());
+        assertTrue(bucket.tryAcquire());
+        assertTrue(bucket.tryAcquire());
+        assertFalse(bucket.tryAcquire());
+        assertTrue(bucket.millisUntilNextPermit() > 0);
+    }
+
+    @Test
+    void burstBelowOneStillAllowsOnePermit() {
+        TokenBucket bucket = new TokenBucket(0.000001, 0);
+        assertTrue(bucket.tryAcquire());
+        assertFalse(bucket.tryAcquire());
+    }
+
+    @Test
+    void refillsOverTime() throws InterruptedException {
+        TokenBucket bucket = new TokenBucket(100, 1);  // one permit per 10 ms
+        assertTrue(bucket.tryAcquire());
+        assertFalse(bucket.tryAcquire());
+        long wait = bucket.millisUntilNextPermit();
+        assertTrue(wait > 0 && wait <= 10, wait + " ms");
+        Thread.sleep(30);
+        assertTrue(bucket.tryAcquire());
+    }
+
+    @Test
+    void refillIsCappedAtTheBurst() throws InterruptedException {
+        TokenBucket bucket = new TokenBucket(1000, 2);
+        Thread.sleep(20);  // would be 20 permits without the cap
+        assertTrue(bucket.tryAcquire());
+        assertTrue(bucket.tryAcquire());
+        assertFalse(bucket.tryAcquire());
+    }
+}